@@ -0,0 +1,42 @@
+package de.tkunkel.monitor.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recorded pages the benchmarks run against, loaded from {@code src/main/resources/fixtures}.
+ * <p>
+ * Fixtures may mark a section with {@code <!-- repeat-start -->}/{@code <!-- repeat-end -->}; {@link #load} repeats
+ * it {@code scale} times, so the same fixture covers small and large pages without checking in megabytes of HTML.
+ */
+public final class Fixtures {
+    public static final String MINECRAFT_DOWNLOAD = "minecraft-bedrock-download.html";
+
+    private static final String REPEAT_START = "<!-- repeat-start -->";
+    private static final String REPEAT_END = "<!-- repeat-end -->";
+
+    private Fixtures() {
+    }
+
+    public static byte[] load(String name, int scale) {
+        String html;
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown fixture " + name);
+            }
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int start = html.indexOf(REPEAT_START);
+        int end = html.indexOf(REPEAT_END);
+        if (start < 0 || end < start) {
+            return html.getBytes(StandardCharsets.UTF_8);
+        }
+        String section = html.substring(start + REPEAT_START.length(), end);
+        return (html.substring(0, start) + section.repeat(scale) + html.substring(end + REPEAT_END.length()))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package de.tkunkel.monitor.extract;
+
+import de.tkunkel.monitor.benchmarks.Fixtures;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Include/exclude filter of the monitors over the absolute link URLs of the download page, with the terms the
+ * Minecraft monitor uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkClassifierBenchmark {
+
+    /**
+     * How often the article section of the fixture is repeated; 1 is about 260 links.
+     */
+    @Param({"1", "16"})
+    public int scale;
+
+    private String[] urls;
+    private LinkClassifier filter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String html = new String(Fixtures.load(Fixtures.MINECRAFT_DOWNLOAD, scale), StandardCharsets.UTF_8);
+        urls = Jsoup.parse(html, "https://www.minecraft.net/en-us/download/server/bedrock")
+                .select("a[href]").eachAttr("abs:href").toArray(new String[0]);
+        filter = LinkClassifier.of(List.of("bedrock", "linux", ".zip"), List.of("preview"));
+    }
+
+    /**
+     * One operation filters all links of the page.
+     */
+    @Benchmark
+    public int filterLinks() {
+        int matches = 0;
+        for (String url : urls) {
+            if (filter.test(url)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,233 @@
+package de.tkunkel.monitor.loadtest;
+
+import de.tkunkel.monitor.monitors.Monitor;
+import de.tkunkel.monitor.monitors.MonitorExecutor;
+import de.tkunkel.monitor.monitors.MonitorResult;
+import de.tkunkel.monitor.starter.Starter;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline load test of the whole monitor stack: starts a {@link StubServer} in a child process, generates
+ * {@code targets} declarative monitors against it, runs {@link MonitorExecutor#execute(List)} {@code runs} times in a
+ * Spring context and reports throughput, p50/p99 monitor latency, heap and allocation per run.
+ * <p>
+ * Targets are spread over {@code hosts} loopback addresses (127.0.0.1, 127.0.0.2, ...), so the per-host limits apply
+ * like they would for real sites. The first run is cold (no validators, no JIT, no connections) and is not gated.
+ * Exits with 1 if a warm run misses {@code max-p99}, {@code min-throughput} or {@code max-heap}.
+ * <p>
+ * Options are {@code --name=value}: targets (1000), hosts (100), runs (3), latency (50ms), jitter (20ms),
+ * payload (64KB), error-rate (0), change-rate (0.1), etag (true), max-p99, min-throughput (monitors/s), max-heap.
+ * Options starting with {@code --monitor.}, {@code --telegram.} or {@code --logging.} go to the Spring context.
+ * Notifications are only sent (to the stub) if TELEGRAM_BOT_TOKEN and TELEGRAM_CHAT_ID are set.
+ */
+public class LoadTest {
+    private static final List<String> SPRING_PREFIXES = List.of("monitor.", "telegram.", "logging.");
+    private static final String MONITOR_PREFIX = "load-";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int targets = Integer.parseInt(options.getOrDefault("targets", "1000"));
+        int hosts = Math.min(254, Integer.parseInt(options.getOrDefault("hosts", "100")));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+
+        Path workDir = Files.createTempDirectory("monitor-load-test");
+        Process stub = startStub(args);
+        int exitCode;
+        try {
+            int port = awaitPort(stub);
+            Path definitions = writeDefinitions(workDir, targets, hosts, port);
+            try (ConfigurableApplicationContext context = startContext(options, workDir, definitions, port)) {
+                exitCode = runLoad(context.getBean(MonitorExecutor.class), options, runs, port);
+            }
+        } finally {
+            stub.destroy();
+            deleteRecursively(workDir);
+        }
+        System.exit(exitCode);
+    }
+
+    private static int runLoad(MonitorExecutor executor, Map<String, String> options, int runs, int port) throws Exception {
+        List<Monitor> monitors = executor.getMonitors().stream()
+                .filter(monitor -> monitor.getName().startsWith(MONITOR_PREFIX))
+                .toList();
+        HttpClient control = HttpClient.newHttpClient();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<String> violations = new ArrayList<>();
+
+        System.out.printf("%d monitors, %d runs%n", monitors.size(), runs);
+        System.out.printf("%-4s %9s %12s %9s %9s %10s %10s %12s  %s%n",
+                "run", "wall ms", "monitors/s", "p50 ms", "p99 ms", "heap MB", "peak MB", "alloc KB/mon", "results");
+        for (int run = 0; run < runs; run++) {
+            if (run > 0) {
+                control.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/_next-run")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+            }
+            System.gc();
+            ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+            long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            List<MonitorResult> results = executor.execute(monitors);
+
+            double wallSeconds = (System.nanoTime() - start) / 1e9;
+            long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+            long peakHeap = peakHeapBytes();
+            System.gc();
+            long heapAfter = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+            long[] latencies = results.stream().mapToLong(result -> result.duration().toNanos()).sorted().toArray();
+            double throughput = results.size() / wallSeconds;
+            Duration p50 = Duration.ofNanos(percentile(latencies, 0.50));
+            Duration p99 = Duration.ofNanos(percentile(latencies, 0.99));
+            Map<String, Long> outcomes = results.stream().collect(Collectors.groupingBy(
+                    result -> result.isSuccess() ? result.outcome().name() : result.status().name(),
+                    TreeMap::new, Collectors.counting()));
+            System.out.printf("%-4d %9.0f %12.1f %9d %9d %10.1f %10.1f %12.1f  %s%n",
+                    run, wallSeconds * 1000, throughput, p50.toMillis(), p99.toMillis(),
+                    heapAfter / 1048576.0, peakHeap / 1048576.0, allocated / 1024.0 / Math.max(1, results.size()), outcomes);
+
+            if (run > 0 || runs == 1) {
+                check(violations, run, "p99", options.get("max-p99") != null
+                        && p99.compareTo(duration(options.get("max-p99"))) > 0, p99 + " > " + options.get("max-p99"));
+                check(violations, run, "throughput", options.get("min-throughput") != null
+                        && throughput < Double.parseDouble(options.get("min-throughput")),
+                        String.format("%.1f < %s", throughput, options.get("min-throughput")));
+                check(violations, run, "heap", options.get("max-heap") != null
+                        && peakHeap > bytes(options.get("max-heap")), peakHeap / 1048576 + " MB > " + options.get("max-heap"));
+            }
+        }
+        violations.forEach(violation -> System.out.println("FAILED " + violation));
+        return violations.isEmpty() ? 0 : 1;
+    }
+
+    private static void check(List<String> violations, int run, String name, boolean violated, String detail) {
+        if (violated) {
+            violations.add("run " + run + " " + name + ": " + detail);
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static long peakHeapBytes() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
+    private static Process startStub(String[] args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                StubServer.class.getName()));
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static int awaitPort(Process stub) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(stub.getInputStream(), StandardCharsets.UTF_8));
+        for (String line; (line = out.readLine()) != null; ) {
+            if (line.startsWith("PORT ")) {
+                return Integer.parseInt(line.substring("PORT ".length()).trim());
+            }
+        }
+        throw new IllegalStateException("Stub server exited before it was listening.");
+    }
+
+    private static Path writeDefinitions(Path workDir, int targets, int hosts, int port) throws IOException {
+        StringBuilder yaml = new StringBuilder("monitors:\n");
+        for (int i = 0; i < targets; i++) {
+            yaml.append("  - name: ").append(MONITOR_PREFIX).append(i).append('\n')
+                    .append("    url: http://127.0.0.").append(1 + i % hosts).append(':').append(port).append("/p/").append(i).append('\n')
+                    .append("    include: [bedrock, linux, .zip]\n")
+                    .append("    exclude: [preview]\n");
+        }
+        Path file = workDir.resolve("monitors.yml");
+        Files.writeString(file, yaml);
+        return file;
+    }
+
+    private static ConfigurableApplicationContext startContext(Map<String, String> options, Path workDir, Path definitions,
+                                                               int port) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("monitor.definitions.file", definitions.toString());
+        properties.put("monitor.state.file", workDir.resolve("monitor-state.log").toString());
+        properties.put("monitor.history.dir", workDir.resolve("history").toString());
+        properties.put("monitor.http.cache.dir", workDir.resolve("http-cache").toString());
+        properties.put("monitor.scheduler.adaptive", "false");
+        properties.put("monitor.livesign.on-startup", "false");
+        properties.put("telegram.api-base-url", "http://127.0.0.1:" + port);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.de.tkunkel.monitor.monitors.TelegramMessageSender", "OFF");
+        options.forEach((name, value) -> {
+            if (SPRING_PREFIXES.stream().anyMatch(name::startsWith)) {
+                properties.put(name, value);
+            }
+        });
+        String[] springArgs = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Starter.class).web(WebApplicationType.NONE).run(springArgs);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+
+    static long bytes(String value) {
+        return DataSize.parse(value).toBytes();
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.tkunkel.monitor.loadtest;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local web server standing in for the monitored sites, speaking HTTP/1.1 and cleartext HTTP/2 (h2c) on one port.
+ * <p>
+ * {@code /p/<n>} serves page {@code n}: {@code payload} bytes of HTML with one Bedrock server link whose version
+ * changes in a {@code change-rate} share of the runs. Responses are delayed by {@code latency} plus up to
+ * {@code jitter} (without blocking a thread), {@code error-rate} of them are 500s. With {@code etag=true} pages carry
+ * an ETag and conditional requests get a 304. {@code /_next-run} starts the next run, {@code /bot.../sendMessage}
+ * accepts Telegram notifications.
+ * <p>
+ * Started by {@link LoadTest} as a separate process, so the stub's own allocations do not show up in the figures;
+ * prints {@code PORT <port>} once it is listening.
+ */
+public class StubServer {
+    private final Duration latency;
+    private final Duration jitter;
+    private final int payloadBytes;
+    private final double errorRate;
+    private final double changeRate;
+    private final boolean etag;
+    private final byte[] filler;
+    private final AtomicInteger run = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final Server server = new Server();
+
+    public StubServer(Duration latency, Duration jitter, int payloadBytes, double errorRate, double changeRate, boolean etag) {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.payloadBytes = payloadBytes;
+        this.errorRate = errorRate;
+        this.changeRate = changeRate;
+        this.etag = etag;
+        this.filler = filler(payloadBytes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTest.parseOptions(args);
+        StubServer stub = new StubServer(
+                LoadTest.duration(options.getOrDefault("latency", "50ms")),
+                LoadTest.duration(options.getOrDefault("jitter", "20ms")),
+                Math.toIntExact(LoadTest.bytes(options.getOrDefault("payload", "64KB"))),
+                Double.parseDouble(options.getOrDefault("error-rate", "0")),
+                Double.parseDouble(options.getOrDefault("change-rate", "0.1")),
+                Boolean.parseBoolean(options.getOrDefault("etag", "true")));
+        int port = stub.start(Integer.parseInt(options.getOrDefault("port", "0")));
+        System.out.println("PORT " + port);
+        System.out.flush();
+        stub.server.join();
+    }
+
+    public int start(int port) throws Exception {
+        HttpConfiguration config = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server,
+                new HttpConnectionFactory(config), new HTTP2CServerConnectionFactory(config));
+        connector.setPort(port);
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract.NonBlocking() {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) {
+                StubServer.this.handle(request, response, callback);
+                return true;
+            }
+        });
+        server.start();
+        return connector.getLocalPort();
+    }
+
+    private void handle(Request request, Response response, Callback callback) {
+        String path = Request.getPathInContext(request);
+        if (path.equals("/_next-run")) {
+            respond(response, callback, 200, "run " + run.incrementAndGet());
+        } else if (path.startsWith("/bot") && path.endsWith("/sendMessage")) {
+            respond(response, callback, 200, "{\"ok\":true}");
+        } else if (path.startsWith("/p/")) {
+            int page = Integer.parseInt(path.substring("/p/".length()));
+            String ifNoneMatch = request.getHeaders().get(HttpHeader.IF_NONE_MATCH);
+            long delay = latency.toNanos() + (jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toNanos()));
+            scheduler.schedule(() -> servePage(page, ifNoneMatch, response, callback), delay, TimeUnit.NANOSECONDS);
+        } else {
+            respond(response, callback, 404, "not found");
+        }
+    }
+
+    private void servePage(int page, String ifNoneMatch, Response response, Callback callback) {
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(response, callback, 500, "stub error");
+            return;
+        }
+        int version = version(page, run.get());
+        String tag = "\"p" + page + "-v" + version + "\"";
+        if (etag) {
+            response.getHeaders().put(HttpHeader.ETAG, tag);
+            if (tag.equals(ifNoneMatch)) {
+                response.setStatus(304);
+                response.write(true, BufferUtil.EMPTY_BUFFER, callback);
+                return;
+            }
+        }
+        byte[] head = ("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Page " + page + "</title></head><body>"
+                + "<a href=\"/dl/bedrock-server-" + page + "." + version + "-linux.zip\">Download</a>"
+                + "<a href=\"/dl/bedrock-server-" + page + "." + (version + 1) + "-linux-preview.zip\">Preview</a>")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "</body></html>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(Math.max(payloadBytes, head.length + tail.length));
+        body.put(head).put(filler, 0, Math.min(filler.length, body.remaining() - tail.length)).put(tail).flip();
+        response.setStatus(200);
+        response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/html; charset=utf-8");
+        response.write(true, body, callback);
+    }
+
+    /**
+     * How often the page changed up to the given run; the same for every stub with the same change rate.
+     */
+    private int version(int page, int upToRun) {
+        int version = 0;
+        for (int r = 1; r <= upToRun; r++) {
+            long hash = (page * 0x9E3779B97F4A7C15L) ^ (r * 0xC2B2AE3D27D4EB4FL);
+            hash ^= hash >>> 29;
+            if ((hash & 0xFFFF) < changeRate * 0x10000) {
+                version++;
+            }
+        }
+        return version;
+    }
+
+    private static void respond(Response response, Callback callback, int status, String text) {
+        response.setStatus(status);
+        response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain; charset=utf-8");
+        response.write(true, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), callback);
+    }
+
+    private static byte[] filler(int size) {
+        StringBuilder html = new StringBuilder(size + 256);
+        for (int i = 0; html.length() < size; i++) {
+            html.append("<article><h3><a href=\"/news/").append(i).append("\">News ").append(i)
+                    .append("</a></h3><p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p></article>");
+        }
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.benchmarks.Fixtures;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The predicate every link of the download page goes through, without the parsing around it. Most links are rejected
+ * without resolving their absolute URL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkFilterBenchmark {
+
+    /**
+     * How often the article section of the fixture is repeated; 1 is about 260 links.
+     */
+    @Param({"1", "16"})
+    public int scale;
+
+    private Element[] links;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String html = new String(Fixtures.load(Fixtures.MINECRAFT_DOWNLOAD, scale), StandardCharsets.UTF_8);
+        links = Jsoup.parse(html, "https://www.minecraft.net/en-us/download/server/bedrock")
+                .select("a[href]").toArray(new Element[0]);
+    }
+
+    /**
+     * One operation filters all links of the page.
+     */
+    @Benchmark
+    public int serverZipLinks() {
+        int matches = 0;
+        for (Element link : links) {
+            if (Minecraft.SERVER_ZIP_LINK.test(link)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
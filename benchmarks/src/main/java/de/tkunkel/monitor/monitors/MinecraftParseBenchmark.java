@@ -0,0 +1,69 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.benchmarks.Fixtures;
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.FetchTimings;
+import de.tkunkel.monitor.http.SpooledBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming extraction of the Bedrock server links from the recorded download page. {@code monitorRun} is what
+ * {@link Minecraft#extractItems} does (stops after {@link Minecraft#MAX_SERVER_ENTRIES} hits), {@code allMatches}
+ * reads the whole page like {@link Minecraft#collectServerEntries()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinecraftParseBenchmark {
+
+    /**
+     * How often the article section of the fixture is repeated; 1 is about 60 KB, 16 about 800 KB.
+     */
+    @Param({"1", "16"})
+    public int scale;
+
+    private FetchResult response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] page = Fixtures.load(Fixtures.MINECRAFT_DOWNLOAD, scale);
+        response = new FetchResult(200, HttpClient.Version.HTTP_2, StandardCharsets.UTF_8, SpooledBody.of(page), null,
+                new FetchTimings(-1, 0, 0), false, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        response.close();
+    }
+
+    @Benchmark
+    public List<Item> monitorRun() {
+        return Minecraft.parseResponse(response, Minecraft.MAX_SERVER_ENTRIES);
+    }
+
+    @Benchmark
+    public List<Item> allMatches() {
+        return Minecraft.parseResponse(response, Integer.MAX_VALUE);
+    }
+}
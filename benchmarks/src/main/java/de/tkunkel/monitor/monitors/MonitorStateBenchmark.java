@@ -0,0 +1,106 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.state.LogStateStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link Monitor#readOldValue()} and {@link Monitor#storeNewValue(String)} against a state log and change history
+ * in a temp directory. Stores are committed every {@code monitorsPerCommit} calls, like the executor does once per
+ * run, so the fsync is amortised the same way as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonitorStateBenchmark {
+
+    @Param({"100"})
+    public int monitorsPerCommit;
+
+    private Path directory;
+    private LogStateStore stateStore;
+    private ChangeHistory changeHistory;
+    private Monitor monitor;
+    private String[] values;
+    private int stores;
+
+    private static final class StateOnlyMonitor extends Monitor {
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+
+        @Override
+        public String getConfigFileName() {
+            return "benchmark.dat";
+        }
+
+        // never run, the benchmark only uses the state methods
+        @Override
+        public MonitorOutcome execute() {
+            return MonitorOutcome.UNCHANGED;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("monitor-state-benchmark");
+        stateStore = new LogStateStore(directory.resolve("monitor-state.log").toString());
+        changeHistory = new ChangeHistory(directory.resolve("history").toString(), 64, 1000, Duration.ofDays(365));
+        monitor = new StateOnlyMonitor();
+        monitor.setStateStore(stateStore);
+        monitor.setChangeHistory(changeHistory);
+        values = new String[]{
+                "- Download (https://www.minecraft.net/bedrockdedicatedserver/bin-linux/bedrock-server-1.21.80.3.zip)",
+                "- Download (https://www.minecraft.net/bedrockdedicatedserver/bin-linux/bedrock-server-1.21.81.2.zip)"};
+        monitor.storeNewValue(values[0]);
+        stateStore.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        changeHistory.close();
+        stateStore.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public String readOldValue() {
+        return monitor.readOldValue();
+    }
+
+    @Benchmark
+    public void storeNewValue() {
+        monitor.storeNewValue(values[stores & 1]);
+        if (++stores % monitorsPerCommit == 0) {
+            stateStore.commit();
+        }
+    }
+}
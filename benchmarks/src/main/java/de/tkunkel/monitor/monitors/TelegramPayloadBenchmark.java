@@ -0,0 +1,46 @@
+package de.tkunkel.monitor.monitors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON body of a {@code sendMessage} call, for a typical change message and a merged one near Telegram's limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelegramPayloadBenchmark {
+
+    @Param({"1", "16"})
+    public int mergedMessages;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        String message = "⚒ Minecraft Bedrock Server Change detected!\n"
+                + "Old: '- Download (https://www.minecraft.net/bedrockdedicatedserver/bin-linux/bedrock-server-1.21.80.3.zip)',\n"
+                + " New: '- Download (https://www.minecraft.net/bedrockdedicatedserver/bin-linux/bedrock-server-1.21.81.2.zip)'";
+        text = String.join("\n\n", Collections.nCopies(mergedMessages, message));
+    }
+
+    @Benchmark
+    public String buildPayload() {
+        return TelegramMessageSender.buildPayload("-100123456789", text);
+    }
+}
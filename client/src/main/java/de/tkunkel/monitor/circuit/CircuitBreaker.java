@@ -0,0 +1,86 @@
+package de.tkunkel.monitor.circuit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker for one target (a monitor or a host), lock-free so checking it costs nothing on the hot path.
+ * <p>
+ * {@code CLOSED}: calls pass, consecutive failures are counted. After {@code failureThreshold} of them the breaker
+ * goes {@code OPEN} and rejects calls for {@code openNanos}. Afterward, exactly one caller wins the CAS to
+ * {@code HALF_OPEN} and runs as the probe: success closes the breaker, failure opens it for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAtNanos = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, long openNanos) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * @return {@code true} if the call may proceed; the caller must then report {@link #onSuccess()} or
+     * {@link #onFailure()}
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        return current == State.OPEN
+                && System.nanoTime() - openedAtNanos.get() >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    /**
+     * @return {@code true} if this failure opened the breaker, so the caller can log the transition once
+     */
+    public boolean onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            // the timestamp must be visible before the state, tryAcquire reads them in the opposite order
+            openedAtNanos.set(System.nanoTime());
+            return state.compareAndSet(current, State.OPEN);
+        }
+        return false;
+    }
+
+    /**
+     * For a call that was acquired but never reached the target: hands a half-open probe back without judging it.
+     */
+    public void release() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,78 @@
+package de.tkunkel.monitor.circuit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory registry of the circuit breakers per monitor (used by the executor) and per host (used by the fetch
+ * layer). Breakers are created on first use; the state is not persisted, a restart closes all of them.
+ */
+@Component
+public class CircuitBreakers {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakers.class);
+
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakers(@Value("${monitor.circuit.enabled:true}") boolean enabled,
+                           @Value("${monitor.circuit.failure-threshold:3}") int failureThreshold,
+                           @Value("${monitor.circuit.open-duration:30m}") Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("monitor.circuit.failure-threshold must be at least 1, was " + failureThreshold);
+        }
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public static CircuitBreakers disabled() {
+        return new CircuitBreakers(false, 1, Duration.ZERO);
+    }
+
+    public CircuitBreaker forMonitor(String monitorName) {
+        return breaker("monitor:" + monitorName);
+    }
+
+    public CircuitBreaker forHost(String host) {
+        return breaker("host:" + host.toLowerCase(Locale.ROOT));
+    }
+
+    private CircuitBreaker breaker(String name) {
+        return breakers.computeIfAbsent(name, key -> new CircuitBreaker(key, failureThreshold, openNanos));
+    }
+
+    /**
+     * @return {@code true} if the call may proceed; always the case when breakers are disabled
+     */
+    public boolean tryAcquire(CircuitBreaker breaker) {
+        return !enabled || breaker.tryAcquire();
+    }
+
+    public void recordSuccess(CircuitBreaker breaker) {
+        if (enabled && breaker.getState() != CircuitBreaker.State.CLOSED) {
+            LOGGER.info("Circuit for {} closed again.", breaker.getName());
+        }
+        breaker.onSuccess();
+    }
+
+    public void recordFailure(CircuitBreaker breaker) {
+        if (breaker.onFailure() && enabled) {
+            LOGGER.warn("Circuit for {} opened after {} consecutive failures, skipping it for {}.",
+                    breaker.getName(), breaker.getConsecutiveFailures(), Duration.ofNanos(openNanos));
+        }
+    }
+
+    public Collection<CircuitBreaker> getBreakers() {
+        return breakers.values();
+    }
+}
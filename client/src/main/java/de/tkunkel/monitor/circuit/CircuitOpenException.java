@@ -0,0 +1,12 @@
+package de.tkunkel.monitor.circuit;
+
+/**
+ * Thrown instead of calling a target whose {@link CircuitBreaker} is open. The executor reports the monitor as
+ * skipped instead of failed.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String breakerName) {
+        super("Circuit open for " + breakerName + ", skipping.");
+    }
+}
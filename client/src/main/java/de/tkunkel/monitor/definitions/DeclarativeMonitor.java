@@ -0,0 +1,114 @@
+package de.tkunkel.monitor.definitions;
+
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.extract.FingerprintRegion;
+import de.tkunkel.monitor.extract.LinkClassifier;
+import de.tkunkel.monitor.extract.StreamingExtractor;
+import de.tkunkel.monitor.http.FetchRequest;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.monitors.PageMonitor;
+import de.tkunkel.monitor.monitors.TelegramMessageSender;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * {@link PageMonitor} built from a {@link MonitorDefinition}. Everything that can be prepared up front (URI, request,
+ * selector, filter) is created once in the constructor and reused for every run.
+ */
+public class DeclarativeMonitor extends PageMonitor {
+    private static final String ABS_PREFIX = "abs:";
+
+    private final String name;
+    private final String stateKey;
+    private final FetchRequest fetchRequest;
+    private final StreamingExtractor extractor;
+    private final String attribute;
+    private final String keyAttribute;
+    private final Predicate<Element> filter;
+    private final int maxMatches;
+    private final FingerprintRegion fingerprintRegion;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+
+    DeclarativeMonitor(String name, String stateKey, URI uri, Map<String, String> headers, StreamingExtractor extractor,
+                       String attribute, String keyAttribute, LinkClassifier filter, int maxMatches, FingerprintRegion fingerprintRegion,
+                       Duration minInterval, Duration maxInterval,
+                       TelegramMessageSender telegramMessageSender, PageFetcher pageFetcher) {
+        super(telegramMessageSender, pageFetcher);
+        this.name = name;
+        this.stateKey = stateKey;
+        this.fetchRequest = new FetchRequest(stateKey, uri, headers);
+        this.extractor = extractor;
+        this.attribute = attribute;
+        this.keyAttribute = keyAttribute;
+        this.filter = attribute.startsWith(ABS_PREFIX)
+                ? filter.forUrlAttribute(attribute.substring(ABS_PREFIX.length()), uri.toString())
+                : element -> filter.test(valueOf(element));
+        this.maxMatches = maxMatches;
+        this.fingerprintRegion = fingerprintRegion;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getConfigFileName() {
+        return stateKey;
+    }
+
+    @Override
+    public FingerprintRegion getFingerprintRegion() {
+        return fingerprintRegion;
+    }
+
+    @Override
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    @Override
+    public Duration getMaxInterval() {
+        return maxInterval;
+    }
+
+    @Override
+    public FetchRequest createFetchRequest() {
+        return fetchRequest;
+    }
+
+    @Override
+    public List<Item> extractItems(FetchResult result) throws IOException {
+        try (InputStream body = result.openBody()) {
+            return extractor.extract(body, result.charset(), fetchRequest.uri().toString(),
+                    filter, this::toItem, maxMatches);
+        }
+    }
+
+    private String valueOf(Element element) {
+        return attribute.isEmpty() ? element.text() : element.attr(attribute);
+    }
+
+    /**
+     * Without a key attribute the value identifies the item, so a new value shows up as added plus removed.
+     */
+    private Item toItem(Element element) {
+        String value = valueOf(element);
+        if (keyAttribute == null) {
+            return new Item(value, value);
+        }
+        String key = keyAttribute.isEmpty() ? element.text() : element.attr(keyAttribute);
+        return new Item(key, value);
+    }
+}
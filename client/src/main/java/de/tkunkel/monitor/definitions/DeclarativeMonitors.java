@@ -0,0 +1,166 @@
+package de.tkunkel.monitor.definitions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import de.tkunkel.monitor.extract.FingerprintRegion;
+import de.tkunkel.monitor.extract.LinkClassifier;
+import de.tkunkel.monitor.extract.StreamingExtractor;
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.monitors.Monitor;
+import de.tkunkel.monitor.monitors.MonitorProvider;
+import de.tkunkel.monitor.monitors.TelegramMessageSender;
+import de.tkunkel.monitor.state.StateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads the monitor definitions file ({@code monitor.definitions.file}, YAML or JSON with a top-level
+ * {@code monitors} list) once at startup and compiles every entry into a {@link DeclarativeMonitor}.
+ * Selectors are parsed once per distinct selector string and include/exclude filters compiled once per distinct set of
+ * terms, both are shared between the definitions using them.
+ * <p>
+ * Every monitor needs a name (compared ignoring case) and state keys of its own: the name identifies its circuit
+ * breaker, metrics and messages. A definition whose name or keys collide with another definition or with one of the
+ * monitor beans fails the startup.
+ */
+@Component
+public class DeclarativeMonitors implements MonitorProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeclarativeMonitors.class);
+
+    private static final String DEFAULT_SELECTOR = "a[href]";
+    private static final String DEFAULT_ATTRIBUTE = "abs:href";
+
+    private final List<Monitor> monitors;
+
+    record DefinitionsFile(List<MonitorDefinition> monitors) {
+    }
+
+    public DeclarativeMonitors(@Value("${monitor.definitions.file:}") String file,
+                               TelegramMessageSender telegramMessageSender,
+                               PageFetcher pageFetcher,
+                               StateStore stateStore,
+                               ChangeHistory changeHistory,
+                               MonitorMetrics metrics,
+                               ObjectProvider<Monitor> beanMonitors) {
+        List<MonitorDefinition> definitions = file.isBlank() ? List.of() : load(Path.of(file));
+        Map<String, StreamingExtractor> extractors = new HashMap<>();
+        Map<List<List<String>>, LinkClassifier> filters = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        Map<String, String> stateKeys = new HashMap<>();
+        beanMonitors.orderedStream().forEach(monitor -> claim(names, stateKeys, monitor, "monitor bean"));
+        List<Monitor> compiled = new ArrayList<>(definitions.size());
+        for (MonitorDefinition definition : definitions) {
+            DeclarativeMonitor monitor = compile(definition, extractors, filters, telegramMessageSender, pageFetcher);
+            claim(names, stateKeys, monitor, file);
+            monitor.setStateStore(stateStore);
+            monitor.setChangeHistory(changeHistory);
+            monitor.setMetrics(metrics);
+            compiled.add(monitor);
+        }
+        this.monitors = List.copyOf(compiled);
+        if (!file.isBlank()) {
+            LOGGER.info("Compiled {} monitor definitions from {} ({} distinct selectors, {} distinct filters).",
+                    monitors.size(), file, extractors.size(), filters.size());
+        }
+    }
+
+    /**
+     * Registers the name of the monitor and its state keys (value and fingerprint) with the monitor's name as their
+     * owner.
+     */
+    private static void claim(Map<String, String> names, Map<String, String> owners, Monitor monitor, String source) {
+        String name = names.putIfAbsent(monitor.getName().toLowerCase(Locale.ROOT), monitor.getName());
+        if (name != null) {
+            throw new IllegalStateException("Duplicate name of monitor '" + monitor.getName() + "' (" + source
+                    + "), already used by monitor '" + name + "'");
+        }
+        for (String key : List.of(monitor.getConfigFileName(), monitor.getFingerprintFileName())) {
+            String owner = owners.putIfAbsent(key, monitor.getName());
+            if (owner != null) {
+                throw new IllegalStateException("Duplicate state key '" + key + "' of monitor '" + monitor.getName()
+                        + "' (" + source + "), already used by monitor '" + owner + "'");
+            }
+        }
+    }
+
+    static List<MonitorDefinition> load(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Gson gson = new Gson();
+            DefinitionsFile definitions;
+            String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.endsWith(".yml") || fileName.endsWith(".yaml")) {
+                Object yaml = new Yaml(new SafeConstructor(new LoaderOptions())).load(reader);
+                JsonElement tree = gson.toJsonTree(yaml);
+                definitions = gson.fromJson(tree, DefinitionsFile.class);
+            } else {
+                definitions = gson.fromJson(reader, DefinitionsFile.class);
+            }
+            return definitions == null || definitions.monitors() == null ? List.of() : definitions.monitors();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read monitor definitions from " + file, e);
+        }
+    }
+
+    private static DeclarativeMonitor compile(MonitorDefinition definition, Map<String, StreamingExtractor> extractors,
+                                              Map<List<List<String>>, LinkClassifier> filters, TelegramMessageSender telegramMessageSender, PageFetcher pageFetcher) {
+        if (isBlank(definition.name()) || isBlank(definition.url())) {
+            throw new IllegalStateException("Monitor definition needs a name and a url: " + definition);
+        }
+        String selector = isBlank(definition.selector()) ? DEFAULT_SELECTOR : definition.selector();
+        StreamingExtractor extractor = extractors.computeIfAbsent(selector, StreamingExtractor::new);
+        List<String> include = definition.include() == null ? List.of() : definition.include();
+        List<String> exclude = definition.exclude() == null ? List.of() : definition.exclude();
+        LinkClassifier filter = filters.computeIfAbsent(List.of(include, exclude), terms -> LinkClassifier.of(include, exclude));
+        String attribute = definition.attribute() == null ? DEFAULT_ATTRIBUTE : definition.attribute().trim();
+        String key = definition.key() == null ? null : definition.key().trim();
+        String stateKey = isBlank(definition.stateKey())
+                ? definition.name().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-") + ".dat"
+                : definition.stateKey();
+        int maxMatches = definition.maxMatches() == null ? 1 : definition.maxMatches();
+        FingerprintRegion region = isBlank(definition.fingerprintStart())
+                ? null
+                : new FingerprintRegion(definition.fingerprintStart(), definition.fingerprintEnd());
+
+        return new DeclarativeMonitor(definition.name(), stateKey, URI.create(definition.url()),
+                definition.headers() == null ? Map.of() : definition.headers(),
+                extractor, attribute, key, filter, maxMatches,
+                region, parseDuration(definition.minInterval()), parseDuration(definition.maxInterval()),
+                telegramMessageSender, pageFetcher);
+    }
+
+    private static Duration parseDuration(String value) {
+        return isBlank(value) ? null : DurationStyle.detectAndParse(value);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @Override
+    public List<Monitor> getMonitors() {
+        return monitors;
+    }
+}
@@ -0,0 +1,39 @@
+package de.tkunkel.monitor.definitions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One monitor as written in the definitions file. Only {@code name} and {@code url} are required.
+ *
+ * @param name             shown in notifications and the live-sign
+ * @param url              page to fetch
+ * @param headers          extra request headers
+ * @param selector         CSS selector of the elements to watch, default {@code a[href]}
+ * @param attribute        attribute holding the watched value (jsoup syntax, e.g. {@code abs:href}); empty for the element text
+ * @param key              attribute identifying an item across runs (e.g. {@code data-platform}), empty for the element
+ *                         text; without it the value is the identity, so changes show up as added and removed items
+ * @param include          terms that must all occur in the value (case-insensitive)
+ * @param exclude          terms that must not occur in the value (case-insensitive)
+ * @param stateKey         key of the stored value, default derived from the name
+ * @param maxMatches       stop parsing after this many matches (= tracked items), default 1
+ * @param fingerprintStart optional start marker of the fingerprinted region
+ * @param fingerprintEnd   optional end marker of the fingerprinted region
+ * @param minInterval      optional shortest polling interval, e.g. {@code 30m}
+ * @param maxInterval      optional longest polling interval, e.g. {@code 7d}
+ */
+public record MonitorDefinition(String name,
+                                String url,
+                                Map<String, String> headers,
+                                String selector,
+                                String attribute,
+                                String key,
+                                List<String> include,
+                                List<String> exclude,
+                                String stateKey,
+                                Integer maxMatches,
+                                String fingerprintStart,
+                                String fingerprintEnd,
+                                String minInterval,
+                                String maxInterval) {
+}
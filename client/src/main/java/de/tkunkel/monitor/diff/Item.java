@@ -0,0 +1,14 @@
+package de.tkunkel.monitor.diff;
+
+/**
+ * One tracked artifact of a page, e.g. one download link. Items are matched by {@code key} between runs, a different
+ * {@code value} for the same key is a change.
+ */
+public record Item(String key, String value) {
+
+    public Item {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key and value of an item must not be null");
+        }
+    }
+}
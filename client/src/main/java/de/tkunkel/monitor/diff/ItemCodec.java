@@ -0,0 +1,42 @@
+package de.tkunkel.monitor.diff;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Stored form of an item list: a JSON array of {@code {"key": ..., "value": ...}} objects. Anything else is state
+ * written by older versions (plain text), which {@link #decode} reports as {@code null}.
+ */
+public final class ItemCodec {
+    private static final Gson GSON = new Gson();
+    private static final Type ITEM_LIST = new TypeToken<List<Item>>() {
+    }.getType();
+
+    private ItemCodec() {
+    }
+
+    public static String encode(List<Item> items) {
+        return GSON.toJson(items, ITEM_LIST);
+    }
+
+    /**
+     * @return the items, or {@code null} if the stored value is not an item list (legacy state)
+     */
+    public static List<Item> decode(String stored) {
+        if (stored == null || !stored.startsWith("[")) {
+            return null;
+        }
+        try {
+            List<Item> items = GSON.fromJson(stored, ITEM_LIST);
+            if (items == null || items.contains(null)) {
+                return null;
+            }
+            return items;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
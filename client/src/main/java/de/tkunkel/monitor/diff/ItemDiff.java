@@ -0,0 +1,20 @@
+package de.tkunkel.monitor.diff;
+
+import java.util.List;
+
+/**
+ * What changed between two item lists, each part in the order of the list it comes from.
+ */
+public record ItemDiff(List<Item> added, List<Item> removed, List<Change> changed) {
+
+    public record Change(String key, String oldValue, String newValue) {
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    public int size() {
+        return added.size() + removed.size() + changed.size();
+    }
+}
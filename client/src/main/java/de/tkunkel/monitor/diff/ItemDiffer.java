@@ -0,0 +1,56 @@
+package de.tkunkel.monitor.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diffs item lists by key through a hash index, so a diff is linear in the number of items and only the values of
+ * items with the same key are compared.
+ */
+public final class ItemDiffer {
+
+    private ItemDiffer() {
+    }
+
+    public static ItemDiff diff(List<Item> previous, List<Item> current) {
+        Map<String, String> previousByKey = new HashMap<>(Math.max(16, previous.size() * 2));
+        for (Item item : previous) {
+            previousByKey.putIfAbsent(item.key(), item.value());
+        }
+        List<Item> added = new ArrayList<>();
+        List<ItemDiff.Change> changed = new ArrayList<>();
+        Map<String, String> seen = new HashMap<>(Math.max(16, current.size() * 2));
+        for (Item item : current) {
+            if (seen.putIfAbsent(item.key(), item.value()) != null) {
+                continue;
+            }
+            String oldValue = previousByKey.get(item.key());
+            if (oldValue == null) {
+                added.add(item);
+            } else if (!oldValue.equals(item.value())) {
+                changed.add(new ItemDiff.Change(item.key(), oldValue, item.value()));
+            }
+        }
+        List<Item> removed = new ArrayList<>();
+        for (Item item : previous) {
+            if (!seen.containsKey(item.key()) && previousByKey.remove(item.key()) != null) {
+                removed.add(item);
+            }
+        }
+        return new ItemDiff(added, removed, changed);
+    }
+
+    /**
+     * Drops items whose key already occurred earlier in the list.
+     */
+    public static List<Item> distinctByKey(List<Item> items) {
+        Map<String, Item> byKey = new LinkedHashMap<>(Math.max(16, items.size() * 2));
+        for (Item item : items) {
+            byKey.putIfAbsent(item.key(), item);
+        }
+        return byKey.size() == items.size() ? items : List.copyOf(byKey.values());
+    }
+}
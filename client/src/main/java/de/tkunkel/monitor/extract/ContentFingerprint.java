@@ -0,0 +1,112 @@
+package de.tkunkel.monitor.extract;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Cheap streaming fingerprint of a response body, used to skip parsing when a page did not change even though
+ * the server ignores conditional requests.
+ * <p>
+ * Bytes are fed in chunks as they arrive; the fingerprint is a hardware-accelerated CRC32C plus the number of
+ * hashed bytes. With a {@link FingerprintRegion} only the bytes between the markers are hashed; if the start
+ * marker never shows up the fingerprint of the whole body is used instead, so a changed page layout is still
+ * reported as a change.
+ */
+public class ContentFingerprint {
+    private final CRC32C wholeCrc = new CRC32C();
+    private long wholeLength;
+
+    private final MarkerMatcher startMatcher;
+    private final MarkerMatcher endMatcher;
+    private final CRC32C regionCrc = new CRC32C();
+    private long regionLength;
+    private boolean inRegion;
+    private boolean regionDone;
+
+    public ContentFingerprint(FingerprintRegion region) {
+        if (region == null) {
+            this.startMatcher = null;
+            this.endMatcher = null;
+        } else {
+            this.startMatcher = new MarkerMatcher(region.startMarker());
+            this.endMatcher = new MarkerMatcher(region.endMarker());
+        }
+    }
+
+    public static String of(byte[] body, FingerprintRegion region) {
+        ContentFingerprint fingerprint = new ContentFingerprint(region);
+        fingerprint.update(body, 0, body.length);
+        return fingerprint.value();
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        wholeCrc.update(buffer, offset, length);
+        wholeLength += length;
+        if (startMatcher == null || regionDone) {
+            return;
+        }
+
+        int end = offset + length;
+        int position = offset;
+        if (!inRegion) {
+            while (position < end && !inRegion) {
+                inRegion = startMatcher.feed(buffer[position++]);
+            }
+        }
+        if (inRegion) {
+            int regionStart = position;
+            while (position < end) {
+                if (endMatcher.feed(buffer[position++])) {
+                    regionDone = true;
+                    break;
+                }
+            }
+            regionCrc.update(buffer, regionStart, position - regionStart);
+            regionLength += position - regionStart;
+        }
+    }
+
+    public String value() {
+        if (inRegion) {
+            return "r" + Long.toHexString(regionCrc.getValue()) + "-" + Long.toHexString(regionLength);
+        }
+        return Long.toHexString(wholeCrc.getValue()) + "-" + Long.toHexString(wholeLength);
+    }
+
+    /**
+     * Byte-wise KMP matcher, so markers split across two chunks are still found.
+     */
+    private static final class MarkerMatcher {
+        private final byte[] pattern;
+        private final int[] failure;
+        private int matched;
+
+        MarkerMatcher(String marker) {
+            this.pattern = marker.getBytes(StandardCharsets.UTF_8);
+            this.failure = new int[pattern.length];
+            for (int i = 1, k = 0; i < pattern.length; i++) {
+                while (k > 0 && pattern[i] != pattern[k]) {
+                    k = failure[k - 1];
+                }
+                if (pattern[i] == pattern[k]) {
+                    k++;
+                }
+                failure[i] = k;
+            }
+        }
+
+        boolean feed(byte b) {
+            while (matched > 0 && b != pattern[matched]) {
+                matched = failure[matched - 1];
+            }
+            if (b == pattern[matched]) {
+                matched++;
+            }
+            if (matched == pattern.length) {
+                matched = failure[matched - 1];
+                return true;
+            }
+            return false;
+        }
+    }
+}
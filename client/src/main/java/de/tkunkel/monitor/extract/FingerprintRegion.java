@@ -0,0 +1,15 @@
+package de.tkunkel.monitor.extract;
+
+/**
+ * Restricts a {@link ContentFingerprint} to the part of a page between two literal markers, e.g.
+ * {@code <main} and {@code </main>}, so session tokens or timestamps elsewhere on the page do not
+ * count as a change. The end marker itself is part of the region.
+ */
+public record FingerprintRegion(String startMarker, String endMarker) {
+
+    public FingerprintRegion {
+        if (startMarker == null || startMarker.isEmpty() || endMarker == null || endMarker.isEmpty()) {
+            throw new IllegalArgumentException("Fingerprint region needs a non-empty start and end marker");
+        }
+    }
+}
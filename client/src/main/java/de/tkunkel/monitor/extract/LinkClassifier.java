@@ -0,0 +1,263 @@
+package de.tkunkel.monitor.extract;
+
+import org.jsoup.nodes.Attributes;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Include/exclude terms compiled into one Aho-Corasick automaton: a value matches if it contains every include term
+ * and no exclude term, ignoring case. A test is a single pass over the value that neither copies nor lower-cases it,
+ * however many terms there are.
+ * <p>
+ * The automaton is immutable, so one instance can be shared by all monitors with the same terms. Its alphabet is just
+ * the characters of the terms (folded to lower case); every other character leads back to the start state, so the
+ * transition table stays small: states times distinct term characters.
+ * <p>
+ * {@link #forUrlAttribute} tests the absolute URL of a link, but only resolves it (which is expensive in jsoup) for
+ * links that can still match.
+ */
+public final class LinkClassifier implements Predicate<CharSequence> {
+    /**
+     * Characters at which {@link Element#absUrl} joins the base URI and the attribute value; an include term containing
+     * one of them can span both.
+     */
+    private static final String JOIN_CHARACTERS = "/?#:";
+    private static final int MAX_INCLUDE_TERMS = Long.SIZE;
+
+    // symbol of every ASCII character, 0 for characters that are in no term
+    private final int[] asciiSymbols = new int[128];
+    // the lower-cased non-ASCII characters of the terms, sorted; their symbols start at otherSymbolOffset
+    private final char[] otherCharacters;
+    private final int otherSymbolOffset;
+    private final int width;
+    // next state for state * width + symbol, failure links already folded in
+    private final int[] transitions;
+    // include terms (one bit each) ending in a state, including the ones ending in its failure chain
+    private final long[] includesEndingIn;
+    private final boolean[] excludeEndsIn;
+    private final long required;
+    // include terms without join characters, see forUrlAttribute
+    private final long joinFree;
+    private final boolean hasExcludes;
+
+    private LinkClassifier(List<String> include, List<String> exclude) {
+        if (include.size() > MAX_INCLUDE_TERMS) {
+            throw new IllegalArgumentException("At most " + MAX_INCLUDE_TERMS + " include terms are supported, got " + include.size());
+        }
+        // alphabet
+        Set<Character> ascii = new TreeSet<>();
+        Set<Character> other = new TreeSet<>();
+        for (String term : concat(include, exclude)) {
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                (c < 128 ? ascii : other).add(c);
+            }
+        }
+        int symbol = 0;
+        for (char c : ascii) {
+            asciiSymbols[c] = ++symbol;
+            if (c >= 'a' && c <= 'z') {
+                asciiSymbols[c - 'a' + 'A'] = symbol;
+            }
+        }
+        this.otherSymbolOffset = symbol + 1;
+        this.otherCharacters = new char[other.size()];
+        int index = 0;
+        for (char c : other) {
+            otherCharacters[index++] = c;
+        }
+        this.width = otherSymbolOffset + otherCharacters.length;
+
+        // trie
+        List<int[]> children = new ArrayList<>();
+        List<Long> includes = new ArrayList<>();
+        List<Boolean> excludes = new ArrayList<>();
+        children.add(newRow());
+        includes.add(0L);
+        excludes.add(false);
+        long requiredBits = 0;
+        long joinFreeBits = 0;
+        for (int term = 0; term < include.size() + exclude.size(); term++) {
+            boolean isInclude = term < include.size();
+            String value = isInclude ? include.get(term) : exclude.get(term - include.size());
+            int state = 0;
+            for (int i = 0; i < value.length(); i++) {
+                int s = symbolOf(value.charAt(i));
+                if (children.get(state)[s] < 0) {
+                    children.get(state)[s] = children.size();
+                    children.add(newRow());
+                    includes.add(0L);
+                    excludes.add(false);
+                }
+                state = children.get(state)[s];
+            }
+            if (isInclude) {
+                long bit = 1L << term;
+                includes.set(state, includes.get(state) | bit);
+                requiredBits |= bit;
+                if (value.chars().noneMatch(c -> JOIN_CHARACTERS.indexOf(c) >= 0)) {
+                    joinFreeBits |= bit;
+                }
+            } else {
+                excludes.set(state, true);
+            }
+        }
+        this.required = requiredBits;
+        this.joinFree = joinFreeBits;
+        this.hasExcludes = excludes.contains(true);
+
+        // breadth first over the trie: failure links, folded into a complete transition table
+        int states = children.size();
+        this.transitions = new int[states * width];
+        this.includesEndingIn = new long[states];
+        this.excludeEndsIn = new boolean[states];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            includesEndingIn[state] = includes.get(state) | (state == 0 ? 0 : includesEndingIn[failure[state]]);
+            excludeEndsIn[state] = excludes.get(state) || state != 0 && excludeEndsIn[failure[state]];
+            for (int s = 0; s < width; s++) {
+                int child = children.get(state)[s];
+                if (child < 0) {
+                    transitions[state * width + s] = state == 0 ? 0 : transitions[failure[state] * width + s];
+                } else {
+                    failure[child] = state == 0 ? 0 : transitions[failure[state] * width + s];
+                    transitions[state * width + s] = child;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param include terms that all have to occur; empty terms are ignored
+     * @param exclude terms of which none may occur; an empty term excludes every value
+     */
+    public static LinkClassifier of(List<String> include, List<String> exclude) {
+        List<String> includeTerms = normalize(include).stream().filter(term -> !term.isEmpty()).toList();
+        return new LinkClassifier(includeTerms, normalize(exclude));
+    }
+
+    @Override
+    public boolean test(CharSequence value) {
+        int state = 0;
+        long found = 0;
+        if (excludeEndsIn[0]) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            state = transitions[state * width + symbolOf(value.charAt(i))];
+            if (excludeEndsIn[state]) {
+                return false;
+            }
+            found |= includesEndingIn[state];
+            if (found == required && !hasExcludes) {
+                return true;
+            }
+        }
+        return found == required;
+    }
+
+    /**
+     * Tests the absolute URL of the attribute, as {@link Element#absUrl} resolves it against the element's base URI.
+     * <p>
+     * Links that cannot match are rejected without resolving them: an include term that is neither in the attribute
+     * value nor in the base URI can only turn up in the resolved URL where the two are joined, which needs a join
+     * character in the term. This shortcut is only taken for plain values (printable ASCII, no percent-encoding);
+     * jsoup strips control characters and decodes the host while resolving, which could form a term.
+     *
+     * @param baseUri the base URI the page is parsed with, its terms are looked up once here
+     */
+    public Predicate<Element> forUrlAttribute(String attribute, String baseUri) {
+        long baseIncludes = includesIn(baseUri);
+        return element -> {
+            Attributes attributes = element.attributes();
+            if (attributes.hasKeyIgnoreCase(attribute) && !couldMatch(attributes.getIgnoreCase(attribute), element, baseUri, baseIncludes)) {
+                return false;
+            }
+            return test(element.absUrl(attribute));
+        };
+    }
+
+    private boolean couldMatch(String value, Element element, String baseUri, long baseIncludes) {
+        long missing = required & ~includesIn(value);
+        if (missing == 0 || !isPlain(value)) {
+            return true;
+        }
+        String elementBaseUri = element.baseUri();
+        // a <base href> in the page changes the base URI
+        long base = elementBaseUri.equals(baseUri) ? baseIncludes : includesIn(elementBaseUri);
+        return (missing & ~base & joinFree) == 0;
+    }
+
+    private long includesIn(CharSequence value) {
+        int state = 0;
+        long found = 0;
+        for (int i = 0; i < value.length() && found != required; i++) {
+            state = transitions[state * width + symbolOf(value.charAt(i))];
+            found |= includesEndingIn[state];
+        }
+        return found;
+    }
+
+    private static boolean isPlain(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || c >= 127 || c == '%') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(otherCharacters, Character.toLowerCase(c));
+        return index < 0 ? 0 : otherSymbolOffset + index;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[width];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static List<String> normalize(List<String> terms) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (terms != null) {
+            for (String term : terms) {
+                normalized.add(lowerCase(term));
+            }
+        }
+        return List.copyOf(normalized);
+    }
+
+    // per character, the way the automaton folds the values
+    private static String lowerCase(String term) {
+        StringBuilder lower = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            lower.append(c < 128 ? (char) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c) : Character.toLowerCase(c));
+        }
+        return lower.toString();
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
@@ -0,0 +1,75 @@
+package de.tkunkel.monitor.extract;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Pulls matching elements out of an HTML stream without materializing the whole document.
+ * <p>
+ * Elements are inspected as soon as their end tag has been parsed and are removed from the tree right after,
+ * so memory use depends on the nesting depth of the page rather than its size. The exception are the descendants of
+ * an open element that already matches the selector: they are kept until that element is inspected, so the mapper
+ * sees its full content (e.g. the text of {@code <a><span>Download</span> now</a>}). Reading stops once
+ * {@code maxMatches} elements have been collected. Because completed elements are discarded, selectors can only
+ * rely on the element itself and its (still open) ancestors, not on earlier siblings or removed children.
+ */
+public class StreamingExtractor {
+    private final Evaluator selector;
+
+    public StreamingExtractor(String cssQuery) {
+        this(QueryParser.parse(cssQuery));
+    }
+
+    public StreamingExtractor(Evaluator selector) {
+        this.selector = selector;
+    }
+
+    public <T> List<T> extract(InputStream in, Charset charset, String baseUri, Predicate<Element> filter,
+                               Function<Element, T> mapper, int maxMatches) throws IOException {
+        List<T> matches = new ArrayList<>();
+        try (StreamParser streamParser = new StreamParser(Parser.htmlParser())
+                .parse(new InputStreamReader(in, charset), baseUri)) {
+            Iterator<Element> elements = streamParser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                if (element.is(selector) && filter.test(element)) {
+                    matches.add(mapper.apply(element));
+                    if (matches.size() >= maxMatches) {
+                        streamParser.stop();
+                        break;
+                    }
+                }
+                if (element.parent() != null && !insideMatch(element)) {
+                    element.remove();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return matches;
+    }
+
+    // the open ancestors are evaluated as parsed so far, which for the usual tag and attribute selectors is final
+    private boolean insideMatch(Element element) {
+        for (Element ancestor = element.parent(); ancestor != null; ancestor = ancestor.parent()) {
+            if (ancestor.is(selector)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,341 @@
+package de.tkunkel.monitor.history;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps every value a monitor stored, as delta-encoded snapshots on disk.
+ * <p>
+ * Each monitor has a directory with an uncompressed {@code journal} that new snapshots are appended to. Once the
+ * journal holds {@code chunk-size} snapshots it is sealed into a gzip-compressed chunk file named
+ * {@code chunk-<sequence>-<first millis>-<last millis>-<count>.gz}. Retention drops whole chunks, oldest first, when a monitor
+ * has more than {@code max-entries} snapshots or when a chunk is older than {@code max-age}.
+ * <p>
+ * All disk work happens on one background thread; {@link #record} only enqueues. The heap only holds the last value
+ * of a bounded number of recently written monitors, anything else is re-read from the journal.
+ */
+@Component
+public class ChangeHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeHistory.class);
+
+    private static final String JOURNAL = "journal";
+    private static final String CHUNK_PREFIX = "chunk-";
+    private static final String CHUNK_SUFFIX = ".gz";
+    private static final int CACHED_JOURNALS = 256;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Path directory;
+    private final int chunkSize;
+    private final int maxEntries;
+    private final Duration maxAge;
+    private final ThreadPoolExecutor worker;
+
+    // only touched from the worker thread
+    private final Map<String, JournalState> journals = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JournalState> eldest) {
+            return size() > CACHED_JOURNALS;
+        }
+    };
+
+    private static final class JournalState {
+        String lastValue;
+        int entries;
+        Instant firstTime;
+    }
+
+    public ChangeHistory(@Value("${monitor.history.dir:history}") String directory,
+                         @Value("${monitor.history.chunk-size:64}") int chunkSize,
+                         @Value("${monitor.history.max-entries:1000}") int maxEntries,
+                         @Value("${monitor.history.max-age:365d}") Duration maxAge) {
+        if (chunkSize < 1 || maxEntries < 1) {
+            throw new IllegalArgumentException("monitor.history.chunk-size and max-entries must be positive");
+        }
+        this.directory = Path.of(directory);
+        this.chunkSize = chunkSize;
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+        // callers wait for queue space when it is full, so history is never silently lost; running the task on
+        // the caller's thread instead would break the single-writer assumption of the journal state
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "change-history");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                ChangeHistory::awaitQueueSpace);
+    }
+
+    private static void awaitQueueSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Change history is closed.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting to record history.", e);
+        }
+    }
+
+    /**
+     * Queues a snapshot of the given value; only waits if the queue is full.
+     */
+    public void record(String monitorKey, String value) {
+        Snapshot snapshot = new Snapshot(Instant.now(), value);
+        try {
+            worker.execute(() -> {
+                try {
+                    append(monitorKey, snapshot);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Could not record history of {}.", monitorKey, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not record history of {}: {}", monitorKey, e.getMessage());
+        }
+    }
+
+    /**
+     * The newest {@code count} snapshots of a monitor, newest first.
+     */
+    public List<Snapshot> lastChanges(String monitorKey, int count) {
+        try {
+            return worker.submit(() -> readLast(monitorKey, count)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not read history of " + monitorKey, e.getCause());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${monitor.history.prune-interval:PT24H}", initialDelayString = "PT1M")
+    public void pruneAll() {
+        worker.execute(() -> {
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            try (DirectoryStream<Path> monitorDirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path monitorDir : monitorDirs) {
+                    applyRetention(monitorDir);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not prune change history in {}.", directory, e);
+            }
+        });
+    }
+
+    private Path monitorDirectory(String monitorKey) {
+        String safe = monitorKey.replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(safe + "-" + Integer.toHexString(monitorKey.hashCode()));
+    }
+
+    private void append(String monitorKey, Snapshot snapshot) throws IOException {
+        Path monitorDir = monitorDirectory(monitorKey);
+        Path journal = monitorDir.resolve(JOURNAL);
+        JournalState state = journals.get(monitorKey);
+        if (state == null) {
+            state = loadJournal(monitorDir, journal);
+            journals.put(monitorKey, state);
+        }
+        if (snapshot.value().equals(state.lastValue)) {
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            SnapshotCodec.write(out, state.entries == 0 ? null : state.lastValue, snapshot);
+        }
+        if (state.entries == 0) {
+            state.firstTime = snapshot.time();
+        }
+        state.lastValue = snapshot.value();
+        state.entries++;
+
+        if (state.entries >= chunkSize) {
+            seal(monitorDir, journal, state, snapshot.time());
+            applyRetention(monitorDir);
+        }
+    }
+
+    private JournalState loadJournal(Path monitorDir, Path journal) throws IOException {
+        Files.createDirectories(monitorDir);
+        JournalState state = new JournalState();
+        if (Files.exists(journal)) {
+            SnapshotCodec.Decoded decoded;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+                decoded = SnapshotCodec.readAll(in);
+            }
+            if (decoded.validBytes() < Files.size(journal)) {
+                // drop a record torn by a crash, otherwise everything appended after it would be unreadable
+                try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                    channel.truncate(decoded.validBytes());
+                }
+            }
+            state.entries = decoded.snapshots().size();
+            state.lastValue = decoded.lastValue();
+            state.firstTime = decoded.snapshots().isEmpty() ? null : decoded.snapshots().get(0).time();
+        } else {
+            // a new journal starts with a full snapshot, but the last value is still needed to skip duplicates
+            List<Path> chunks = chunks(monitorDir);
+            if (!chunks.isEmpty()) {
+                state.lastValue = readChunk(chunks.get(chunks.size() - 1)).lastValue();
+            }
+        }
+        return state;
+    }
+
+    private void seal(Path monitorDir, Path journal, JournalState state, Instant lastTime) throws IOException {
+        List<Path> existing = chunks(monitorDir);
+        long sequence = existing.isEmpty() ? 0 : chunkField(existing.get(existing.size() - 1), 0) + 1;
+        String name = CHUNK_PREFIX + sequence + "-" + state.firstTime.toEpochMilli() + "-" + lastTime.toEpochMilli()
+                + "-" + state.entries + CHUNK_SUFFIX;
+        Path chunk = monitorDir.resolve(name);
+        Path tmp = monitorDir.resolve(name + ".tmp");
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            Files.copy(journal, out);
+        }
+        Files.move(tmp, chunk, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(journal);
+        state.entries = 0;
+        state.firstTime = null;
+    }
+
+    private void applyRetention(Path monitorDir) throws IOException {
+        List<Path> chunks = chunks(monitorDir);
+        long total = journalEntries(monitorDir);
+        for (Path chunk : chunks) {
+            total += chunkCount(chunk);
+        }
+        long cutoff = Instant.now().minus(maxAge).toEpochMilli();
+        for (Path chunk : chunks) {
+            int count = chunkCount(chunk);
+            if (total - count < maxEntries && chunkLastMillis(chunk) >= cutoff) {
+                break;
+            }
+            Files.delete(chunk);
+            total -= count;
+            LOGGER.debug("Dropped history chunk {}.", chunk);
+        }
+    }
+
+    private long journalEntries(Path monitorDir) throws IOException {
+        Path journal = monitorDir.resolve(JOURNAL);
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            return SnapshotCodec.readAll(in).snapshots().size();
+        }
+    }
+
+    private List<Snapshot> readLast(String monitorKey, int count) throws IOException {
+        Path monitorDir = monitorDirectory(monitorKey);
+        if (!Files.isDirectory(monitorDir) || count <= 0) {
+            return List.of();
+        }
+        List<Snapshot> newestFirst = new ArrayList<>(count);
+        Path journal = monitorDir.resolve(JOURNAL);
+        if (Files.exists(journal)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+                addNewestFirst(SnapshotCodec.readAll(in).snapshots(), newestFirst, count);
+            }
+        }
+        List<Path> chunks = chunks(monitorDir);
+        for (int i = chunks.size() - 1; i >= 0 && newestFirst.size() < count; i--) {
+            addNewestFirst(readChunk(chunks.get(i)).snapshots(), newestFirst, count);
+        }
+        return newestFirst;
+    }
+
+    private static void addNewestFirst(List<Snapshot> oldestFirst, List<Snapshot> target, int count) {
+        List<Snapshot> reversed = new ArrayList<>(oldestFirst);
+        Collections.reverse(reversed);
+        for (Snapshot snapshot : reversed) {
+            if (target.size() >= count) {
+                return;
+            }
+            target.add(snapshot);
+        }
+    }
+
+    private static SnapshotCodec.Decoded readChunk(Path chunk) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(chunk))) {
+            return SnapshotCodec.readAll(new DataInputStream(new BufferedInputStream(in)));
+        }
+    }
+
+    /**
+     * Chunk files of a monitor, oldest first (by sequence number, timestamps can repeat).
+     */
+    private static List<Path> chunks(Path monitorDir) throws IOException {
+        if (!Files.isDirectory(monitorDir)) {
+            return List.of();
+        }
+        List<Path> chunks = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(monitorDir, CHUNK_PREFIX + "*" + CHUNK_SUFFIX)) {
+            stream.forEach(chunks::add);
+        }
+        chunks.sort((a, b) -> Long.compare(chunkField(a, 0), chunkField(b, 0)));
+        return chunks;
+    }
+
+    private static long chunkLastMillis(Path chunk) {
+        return chunkField(chunk, 2);
+    }
+
+    private static int chunkCount(Path chunk) {
+        return (int) chunkField(chunk, 3);
+    }
+
+    private static long chunkField(Path chunk, int field) {
+        String name = chunk.getFileName().toString();
+        String[] parts = name.substring(CHUNK_PREFIX.length(), name.length() - CHUNK_SUFFIX.length()).split("-");
+        return Long.parseLong(parts[field]);
+    }
+
+    @PreDestroy
+    public void close() {
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Change history did not finish writing within 10 seconds.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
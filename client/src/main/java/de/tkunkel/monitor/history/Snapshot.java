@@ -0,0 +1,9 @@
+package de.tkunkel.monitor.history;
+
+import java.time.Instant;
+
+/**
+ * One value a monitor stored at a point in time.
+ */
+public record Snapshot(Instant time, String value) {
+}
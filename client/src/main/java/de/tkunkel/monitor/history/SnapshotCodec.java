@@ -0,0 +1,91 @@
+package de.tkunkel.monitor.history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes snapshots as deltas against their predecessor: the length of the common prefix and suffix plus the
+ * changed middle part. The first snapshot of a chunk has no predecessor and is stored in full, so every chunk can be
+ * decoded (and deleted) on its own.
+ */
+final class SnapshotCodec {
+
+    private static final int HEADER_BYTES = 8 + 4 + 4 + 4;
+    private static final int MAX_MIDDLE_BYTES = 64 * 1024 * 1024;
+
+    private SnapshotCodec() {
+    }
+
+    static void write(DataOutputStream out, String previous, Snapshot snapshot) throws IOException {
+        String value = snapshot.value();
+        int prefix = 0;
+        int suffix = 0;
+        if (previous != null) {
+            int max = Math.min(previous.length(), value.length());
+            while (prefix < max && previous.charAt(prefix) == value.charAt(prefix)) {
+                prefix++;
+            }
+            // the middle is stored as UTF-8, so it must not start or end inside a surrogate pair
+            if (prefix > 0 && Character.isHighSurrogate(value.charAt(prefix - 1))) {
+                prefix--;
+            }
+            while (suffix < max - prefix
+                    && previous.charAt(previous.length() - 1 - suffix) == value.charAt(value.length() - 1 - suffix)) {
+                suffix++;
+            }
+            if (suffix > 0 && Character.isLowSurrogate(value.charAt(value.length() - suffix))) {
+                suffix--;
+            }
+        }
+        byte[] middle = value.substring(prefix, value.length() - suffix).getBytes(StandardCharsets.UTF_8);
+        out.writeLong(snapshot.time().toEpochMilli());
+        out.writeInt(prefix);
+        out.writeInt(suffix);
+        out.writeInt(middle.length);
+        out.write(middle);
+    }
+
+    /**
+     * Decodes all complete snapshots; a record cut off by a crash ends the list.
+     */
+    static Decoded readAll(DataInputStream in) throws IOException {
+        List<Snapshot> snapshots = new ArrayList<>();
+        String previous = "";
+        long validBytes = 0;
+        try {
+            while (true) {
+                long time = in.readLong();
+                int prefix = in.readInt();
+                int suffix = in.readInt();
+                int middleLength = in.readInt();
+                if (prefix < 0 || suffix < 0 || prefix + suffix > previous.length()
+                        || middleLength < 0 || middleLength > MAX_MIDDLE_BYTES) {
+                    break;
+                }
+                byte[] middle = new byte[middleLength];
+                in.readFully(middle);
+                String value = previous.substring(0, prefix)
+                        + new String(middle, StandardCharsets.UTF_8)
+                        + previous.substring(previous.length() - suffix);
+                snapshots.add(new Snapshot(Instant.ofEpochMilli(time), value));
+                previous = value;
+                validBytes += HEADER_BYTES + middleLength;
+            }
+        } catch (EOFException e) {
+            // end of data or torn last record
+        }
+        return new Decoded(snapshots, validBytes);
+    }
+
+    record Decoded(List<Snapshot> snapshots, long validBytes) {
+        String lastValue() {
+            return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1).value();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.tkunkel.monitor.http;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A GET request issued through the {@link PageFetcher}.
+ *
+ * @param cacheKey identifies the owner of the stored validators, usually the monitor's config file name,
+ *                 so two monitors watching the same URL do not consume each other's changes
+ * @param uri      the page to fetch
+ * @param headers  additional request headers
+ */
+public record FetchRequest(String cacheKey, URI uri, Map<String, String> headers) {
+
+    public FetchRequest {
+        headers = Map.copyOf(headers);
+    }
+}
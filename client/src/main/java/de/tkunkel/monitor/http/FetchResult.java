@@ -0,0 +1,46 @@
+package de.tkunkel.monitor.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.Charset;
+
+/**
+ * Response of a {@link PageFetcher} call. A 304 carries an empty body.
+ *
+ * @param fingerprint content fingerprint computed while the body was streamed in, {@code null} if none was requested
+ * @param timings     how long the phases of the fetch took, {@code null} if the server was not asked at all
+ * @param fromCache   the body (or the 304) comes from the {@link ResponseCache}
+ * @param validators  {@code ETag}/{@code Last-Modified} of a 200, {@code null} otherwise; not stored by the fetch,
+ *                    the caller hands them to {@link PageFetcher#storeValidators} once it has processed the body
+ */
+public record FetchResult(int statusCode, HttpClient.Version version, Charset charset, SpooledBody body,
+                          String fingerprint, FetchTimings timings, boolean fromCache,
+                          ValidatorCache.Validators validators) implements AutoCloseable {
+
+    public static final int NOT_MODIFIED = 304;
+
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
+
+    public InputStream openBody() throws IOException {
+        return body.open();
+    }
+
+    /**
+     * First characters of the body, for log output of failed requests.
+     */
+    public String bodyPreview(int maxBytes) {
+        try (InputStream in = body.open()) {
+            return new String(in.readNBytes(maxBytes), charset);
+        } catch (IOException e) {
+            return "<unreadable body: " + e.getMessage() + ">";
+        }
+    }
+
+    @Override
+    public void close() {
+        body.close();
+    }
+}
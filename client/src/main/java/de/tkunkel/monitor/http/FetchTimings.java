@@ -0,0 +1,9 @@
+package de.tkunkel.monitor.http;
+
+/**
+ * Duration of the phases of one page fetch, recorded by {@code MonitorMetrics}.
+ *
+ * @param dnsNanos name resolution, {@code -1} if it was not measured (IP literal or resolution failed)
+ */
+public record FetchTimings(long dnsNanos, long ttfbNanos, long downloadNanos) {
+}
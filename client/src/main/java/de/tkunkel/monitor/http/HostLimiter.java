@@ -0,0 +1,81 @@
+package de.tkunkel.monitor.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Politeness limit per host for the {@link PageFetcher}: at most {@code max-in-flight} concurrent requests and
+ * {@code requests-per-second} request starts per host. Different hosts have independent permits and never wait on
+ * each other.
+ * <p>
+ * The rate limit reserves start slots with a CAS on the host's next free slot, so there is no lock on the hot path.
+ * Waiting happens through {@link Semaphore#acquire()} and {@link TimeUnit#sleep}, which park a virtual thread
+ * without pinning a platform thread.
+ */
+@Component
+public class HostLimiter {
+    private final int maxInFlight;
+    private final long intervalNanos;
+    private final ConcurrentMap<String, HostPermits> hosts = new ConcurrentHashMap<>();
+
+    private static final class HostPermits {
+        final Semaphore inFlight;
+        final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+
+        HostPermits(int maxInFlight) {
+            this.inFlight = new Semaphore(maxInFlight, true);
+        }
+    }
+
+    /**
+     * Returned by {@link #acquire}; closing it hands the in-flight permit back.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public HostLimiter(@Value("${monitor.http.host.max-in-flight:4}") int maxInFlight,
+                       @Value("${monitor.http.host.requests-per-second:2.0}") double requestsPerSecond) {
+        if (maxInFlight < 1 || requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("monitor.http.host.max-in-flight and requests-per-second must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+    }
+
+    public Permit acquire(String host) throws InterruptedException {
+        HostPermits permits = hosts.computeIfAbsent(host.toLowerCase(Locale.ROOT), key -> new HostPermits(maxInFlight));
+        permits.inFlight.acquire();
+        try {
+            awaitSlot(permits);
+        } catch (InterruptedException e) {
+            permits.inFlight.release();
+            throw e;
+        }
+        return permits.inFlight::release;
+    }
+
+    private void awaitSlot(HostPermits permits) throws InterruptedException {
+        long slot;
+        while (true) {
+            long now = System.nanoTime();
+            long next = permits.nextSlotNanos.get();
+            slot = Math.max(now, next);
+            if (permits.nextSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+                break;
+            }
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package de.tkunkel.monitor.http;
+
+import de.tkunkel.monitor.circuit.CircuitBreaker;
+import de.tkunkel.monitor.circuit.CircuitBreakers;
+import de.tkunkel.monitor.circuit.CircuitOpenException;
+import de.tkunkel.monitor.extract.ContentFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fetch layer used by the monitors: issues conditional GETs through the {@link SharedHttpClient} using the
+ * validators from the {@link ValidatorCache}, so unchanged pages come back as a body-less 304. The validators of a new
+ * response are only stored by {@link #storeValidators}, once the caller has processed the body; a run that fails or
+ * is dropped after the fetch therefore gets the full page again next time instead of a 304.
+ * <p>
+ * Bodies are streamed in fixed-size chunks into a {@link SpooledBody}, optionally updating a
+ * {@link ContentFingerprint} on the way, so heap usage per fetch stays bounded regardless of the page size.
+ * Every request first passes the {@link HostLimiter} of its host. Hosts that keep failing (connection errors,
+ * 5xx, 429) get their circuit opened; requests to them then fail fast with a {@link CircuitOpenException}.
+ * <p>
+ * Below all of that sits the {@link ResponseCache}: a fresh entry is served without touching the network (as a 304
+ * if the caller already saw exactly that response), a stale one is revalidated with its own validators when the caller
+ * has none, and cacheable 200 responses are stored for the next caller.
+ */
+@Component
+public class PageFetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageFetcher.class);
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final SharedHttpClient httpClient;
+    private final ValidatorCache validatorCache;
+    private final HostLimiter hostLimiter;
+    private final CircuitBreakers circuitBreakers;
+    private final ResponseCache responseCache;
+    private final long spoolThreshold;
+
+    public PageFetcher(SharedHttpClient httpClient, ValidatorCache validatorCache, HostLimiter hostLimiter,
+                       CircuitBreakers circuitBreakers, ResponseCache responseCache,
+                       @Value("${monitor.http.spool-threshold:256KB}") DataSize spoolThreshold) {
+        this.httpClient = httpClient;
+        this.validatorCache = validatorCache;
+        this.hostLimiter = hostLimiter;
+        this.circuitBreakers = circuitBreakers;
+        this.responseCache = responseCache;
+        this.spoolThreshold = spoolThreshold.toBytes();
+    }
+
+    public FetchResult fetch(FetchRequest fetchRequest) throws IOException, InterruptedException {
+        return fetch(fetchRequest, null);
+    }
+
+    public FetchResult fetch(FetchRequest fetchRequest, ContentFingerprint fingerprint) throws IOException, InterruptedException {
+        ResponseCache.CachedResponse cached = responseCache.lookup(fetchRequest);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            FetchResult hit = fromCache(fetchRequest, cached, fingerprint, null);
+            if (hit != null) {
+                LOGGER.debug("{} served from the response cache.", fetchRequest.uri());
+                return hit;
+            }
+            cached = null;
+        }
+
+        String host = fetchRequest.uri().getHost();
+        CircuitBreaker breaker = circuitBreakers.forHost(host);
+        if (!circuitBreakers.tryAcquire(breaker)) {
+            throw new CircuitOpenException(breaker.getName());
+        }
+        boolean success = false;
+        // the permit covers the download as well, that is what keeps the host busy
+        try (HostLimiter.Permit permit = hostLimiter.acquire(host)) {
+            FetchResult result = fetchPermitted(fetchRequest, fingerprint, cached);
+            success = result.statusCode() < 500 && result.statusCode() != 429;
+            return result;
+        } finally {
+            // also reached on interrupt/timeout, so a half-open probe never stays pending
+            if (success) {
+                circuitBreakers.recordSuccess(breaker);
+            } else {
+                circuitBreakers.recordFailure(breaker);
+            }
+        }
+    }
+
+    /**
+     * @param cached stale cache entry for the request, {@code null} if there is none
+     */
+    private FetchResult fetchPermitted(FetchRequest fetchRequest, ContentFingerprint fingerprint,
+                                       ResponseCache.CachedResponse cached) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = httpClient.newRequest(fetchRequest.uri()).GET();
+        fetchRequest.headers().forEach(builder::header);
+
+        ValidatorCache.Validators ownValidators = validatorCache.get(fetchRequest);
+        // without validators of its own the caller can still save the download if the cached copy is unchanged
+        ValidatorCache.Validators validators = ownValidators == null && cached != null && cached.hasValidators()
+                ? cached.validators()
+                : ownValidators;
+        if (validators != null) {
+            if (validators.etag() != null) {
+                builder.header("If-None-Match", validators.etag());
+            }
+            if (validators.lastModified() != null) {
+                builder.header("If-Modified-Since", validators.lastModified());
+            }
+        }
+
+        long dnsNanos = resolve(fetchRequest.uri().getHost());
+        long sendStart = System.nanoTime();
+        // ofInputStream returns as soon as the headers are in, the body is read below
+        HttpResponse<InputStream> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        long headersReceived = System.nanoTime();
+        Charset charset = charsetOf(response);
+        if (response.statusCode() == FetchResult.NOT_MODIFIED) {
+            response.body().close();
+            FetchTimings timings = new FetchTimings(dnsNanos, headersReceived - sendStart, System.nanoTime() - headersReceived);
+            if (cached != null && (ownValidators == null || cached.matches(ownValidators))) {
+                // the server confirmed the cached copy
+                ResponseCache.CachedResponse refreshed = responseCache.refresh(cached, response.headers());
+                if (ownValidators == null) {
+                    FetchResult revalidated = refreshed == null
+                            ? null
+                            : fromCache(fetchRequest, refreshed, fingerprint, timings);
+                    if (revalidated != null) {
+                        LOGGER.debug("{} revalidated, served from the response cache.", fetchRequest.uri());
+                        return revalidated;
+                    }
+                    // evicted or replaced in the meantime, fetch it for real
+                    return fetchPermitted(fetchRequest, fingerprint, null);
+                }
+            }
+            LOGGER.debug("{} not modified since last fetch.", fetchRequest.uri());
+            return new FetchResult(response.statusCode(), response.version(), charset, SpooledBody.empty(), null,
+                    timings, false, null);
+        }
+
+        SpooledBody body = new SpooledBody(spoolThreshold);
+        try (InputStream in = response.body()) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                body.write(chunk, 0, read);
+                if (fingerprint != null) {
+                    fingerprint.update(chunk, 0, read);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+
+        FetchTimings timings = new FetchTimings(dnsNanos, headersReceived - sendStart, System.nanoTime() - headersReceived);
+        ValidatorCache.Validators newValidators = null;
+        if (response.statusCode() == 200) {
+            newValidators = new ValidatorCache.Validators(
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+            responseCache.store(fetchRequest, response.headers(), response.version(), charset, body);
+        }
+        return new FetchResult(response.statusCode(), response.version(), charset, body,
+                fingerprint == null ? null : fingerprint.value(), timings, false, newValidators);
+    }
+
+    /**
+     * Answers the request from the cache: a 304 if the caller's validators describe the cached response, the cached
+     * body otherwise. Like for a downloaded 200 the result carries the validators and the fingerprint is computed,
+     * here by reading the body once.
+     *
+     * @return {@code null} if the entry was evicted in the meantime
+     */
+    private FetchResult fromCache(FetchRequest fetchRequest, ResponseCache.CachedResponse cached,
+                                  ContentFingerprint fingerprint, FetchTimings timings) throws IOException {
+        ValidatorCache.Validators ownValidators = validatorCache.get(fetchRequest);
+        if (ownValidators != null && cached.matches(ownValidators)) {
+            return new FetchResult(FetchResult.NOT_MODIFIED, cached.versionOrDefault(), cached.charsetOrDefault(),
+                    SpooledBody.empty(), null, timings, true, null);
+        }
+        SpooledBody body = responseCache.openBody(cached);
+        if (body == null) {
+            return null;
+        }
+        if (fingerprint != null) {
+            try (InputStream in = body.open()) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    fingerprint.update(chunk, 0, read);
+                }
+            }
+        }
+        return new FetchResult(200, cached.versionOrDefault(), cached.charsetOrDefault(), body,
+                fingerprint == null ? null : fingerprint.value(), timings, true, cached.validators());
+    }
+
+    /**
+     * Stores the validators of a processed 200 response for the next conditional request. Called once the new state
+     * derived from the response is stored, so both are committed together.
+     */
+    public void storeValidators(FetchRequest fetchRequest, ValidatorCache.Validators validators) {
+        if (validators != null) {
+            validatorCache.put(fetchRequest, validators);
+        }
+    }
+
+    /**
+     * Resolves the host up front so the lookup can be timed on its own; the JDK caches the answer, so the
+     * client's own lookup right after is served from memory.
+     *
+     * @return nanoseconds spent, {@code -1} if the lookup failed (the request will report the error)
+     */
+    private static long resolve(String host) {
+        long start = System.nanoTime();
+        try {
+            InetAddress.getAllByName(host);
+            return System.nanoTime() - start;
+        } catch (UnknownHostException e) {
+            return -1;
+        }
+    }
+
+    private static Charset charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index >= 0) {
+            String name = contentType.substring(index + "charset=".length()).split(";")[0].trim().replace("\"", "");
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Unknown charset '{}' in Content-Type, using UTF-8.", name);
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
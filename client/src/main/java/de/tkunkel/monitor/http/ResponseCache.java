@@ -0,0 +1,529 @@
+package de.tkunkel.monitor.http;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP response cache below the {@link PageFetcher}, shared by all monitors and kept across restarts.
+ * <p>
+ * Entries are keyed by URL and request headers (not by the monitor), so several monitors watching the same vendor
+ * page share one entry. Only 200 responses are stored, honouring {@code Cache-Control}: {@code no-store} is never
+ * stored, {@code no-cache} is stored but revalidated on every use, {@code max-age} (minus {@code Age}) decides how
+ * long an entry is served without asking the server. Responses without {@code max-age} get
+ * {@code monitor.http.cache.default-max-age}; stale entries with an {@code ETag} or {@code Last-Modified} are still
+ * kept for conditional requests.
+ * <p>
+ * Each entry is a gzip-compressed body ({@code <key>.gz}) and its metadata ({@code <key>.json}) in
+ * {@code monitor.http.cache.dir}. Bodies are read back through a memory-mapped file and inflated while the monitor
+ * reads them; small bodies are additionally kept compressed on the heap. Both tiers are bounded in bytes
+ * ({@code max-disk}, {@code max-memory}) and evict the least recently used entry first; the order survives restarts
+ * via the modification time of the body file.
+ */
+@Component
+public class ResponseCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final String BODY_SUFFIX = ".gz";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // bigger bodies are only served from the mapped file
+    private static final int MEMORY_ENTRY_FRACTION = 8;
+
+    private final Gson gson = new Gson();
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    private final long defaultMaxAgeMillis;
+
+    // guarded by this; access order, eldest first. A body in memory always belongs to the entry in entries, and the
+    // body files of an entry are only replaced together with it
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long memoryBytes;
+
+    /**
+     * Metadata of a stored response.
+     *
+     * @param maxAgeMillis how long after {@code storedAtMillis} the entry may be served without revalidation
+     */
+    public record CachedResponse(String key, String uri, String version, String charset, String etag,
+                                 String lastModified, long size, long compressedSize, long storedAtMillis,
+                                 long maxAgeMillis, boolean noCache) {
+
+        public boolean isFresh(long nowMillis) {
+            return !noCache && nowMillis - storedAtMillis < maxAgeMillis;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Whether the validators a client stored describe this very response.
+         */
+        public boolean matches(ValidatorCache.Validators validators) {
+            if (validators.etag() != null) {
+                return validators.etag().equals(etag);
+            }
+            return validators.lastModified() != null && validators.lastModified().equals(lastModified);
+        }
+
+        public ValidatorCache.Validators validators() {
+            return new ValidatorCache.Validators(etag, lastModified);
+        }
+
+        public Charset charsetOrDefault() {
+            try {
+                return charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+
+        public HttpClient.Version versionOrDefault() {
+            try {
+                return version == null ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.valueOf(version);
+            } catch (IllegalArgumentException e) {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        }
+
+        private CachedResponse refreshed(long nowMillis, long newMaxAgeMillis, boolean newNoCache) {
+            return new CachedResponse(key, uri, version, charset, etag, lastModified, size, compressedSize, nowMillis,
+                    newMaxAgeMillis, newNoCache);
+        }
+    }
+
+    private record CacheControl(boolean noStore, boolean noCache, long maxAgeSeconds) {
+    }
+
+    public ResponseCache(@Value("${monitor.http.cache.enabled:true}") boolean enabled,
+                         @Value("${monitor.http.cache.dir:http-cache}") String directory,
+                         @Value("${monitor.http.cache.max-disk:256MB}") DataSize maxDisk,
+                         @Value("${monitor.http.cache.max-memory:16MB}") DataSize maxMemory,
+                         @Value("${monitor.http.cache.default-max-age:0s}") Duration defaultMaxAge) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.maxDiskBytes = maxDisk.toBytes();
+        this.maxMemoryBytes = maxMemory.toBytes();
+        this.defaultMaxAgeMillis = defaultMaxAge.toMillis();
+        if (enabled) {
+            load();
+            LOGGER.info("Response cache in {} holds {} entries ({} KB on disk, limit {}).",
+                    this.directory.toAbsolutePath(), entries.size(), diskBytes / 1024, maxDisk);
+        }
+    }
+
+    public static ResponseCache disabled() {
+        return new ResponseCache(false, "http-cache", DataSize.ofBytes(0), DataSize.ofBytes(0), Duration.ZERO);
+    }
+
+    /**
+     * Entries of earlier runs, least recently used first.
+     */
+    private void load() {
+        List<CachedResponse> loaded = new ArrayList<>();
+        Map<String, FileTime> lastUsed = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        // left over from a crash while storing
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(METADATA_SUFFIX)) {
+                        CachedResponse entry = readMetadata(file);
+                        Path body = bodyFile(entry == null ? null : entry.key());
+                        if (entry == null || body == null || !Files.exists(body)) {
+                            Files.deleteIfExists(file);
+                            continue;
+                        }
+                        loaded.add(entry);
+                        lastUsed.put(entry.key(), Files.getLastModifiedTime(body));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read response cache " + directory, e);
+        }
+        loaded.sort((a, b) -> lastUsed.get(a.key()).compareTo(lastUsed.get(b.key())));
+        synchronized (this) {
+            for (CachedResponse entry : loaded) {
+                entries.put(entry.key(), entry);
+                diskBytes += entry.compressedSize();
+            }
+            evictDisk();
+        }
+        // bodies without metadata
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + BODY_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!entries.containsKey(name.substring(0, name.length() - BODY_SUFFIX.length()))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not clean up response cache {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private CachedResponse readMetadata(Path file) {
+        try {
+            return gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), CachedResponse.class);
+        } catch (IOException | JsonParseException e) {
+            LOGGER.debug("Dropping unreadable cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the stored response for the request, fresh or not; {@code null} if there is none
+     */
+    public synchronized CachedResponse lookup(FetchRequest request) {
+        return enabled ? entries.get(key(request)) : null;
+    }
+
+    /**
+     * Opens the body of a stored response.
+     *
+     * @return the body, {@code null} if the entry was evicted or replaced in the meantime
+     */
+    public SpooledBody openBody(CachedResponse entry) {
+        ByteBuffer compressed;
+        synchronized (this) {
+            if (entries.get(entry.key()) != entry) {
+                return null;
+            }
+            compressed = memory.get(entry.key());
+        }
+        if (compressed == null) {
+            Path file = bodyFile(entry.key());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed, and also after the file is evicted
+                compressed = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                remove(entry);
+                return null;
+            } catch (IOException e) {
+                LOGGER.warn("Could not read cached body {}: {}", file, e.getMessage());
+                remove(entry);
+                return null;
+            }
+            if (!remember(entry, compressed)) {
+                // replaced while mapping, the mapping may already hold the body of the new entry
+                return null;
+            }
+        }
+        return SpooledBody.ofGzip(compressed.asReadOnlyBuffer(), entry.size());
+    }
+
+    /**
+     * Stores a 200 response if its {@code Cache-Control} allows it. Errors are logged, a broken cache never fails
+     * the fetch.
+     */
+    public void store(FetchRequest request, HttpHeaders headers, HttpClient.Version version, Charset charset, SpooledBody body) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(request);
+        CacheControl cacheControl = cacheControl(headers);
+        String etag = headers.firstValue("ETag").orElse(null);
+        String lastModified = headers.firstValue("Last-Modified").orElse(null);
+        long maxAgeMillis = maxAgeMillis(cacheControl, headers);
+        if (cacheControl.noStore() || (maxAgeMillis <= 0 && etag == null && lastModified == null)) {
+            // nothing we could ever serve or revalidate
+            remove(key);
+            return;
+        }
+        Path tempBody = null;
+        Path tempMetadata = null;
+        try {
+            // unique names, two monitors may store the same page at the same time
+            tempBody = Files.createTempFile(directory, key, BODY_SUFFIX + TEMP_SUFFIX);
+            tempMetadata = Files.createTempFile(directory, key, METADATA_SUFFIX + TEMP_SUFFIX);
+            try (InputStream in = body.open();
+                 OutputStream out = new FastGzipOutputStream(Files.newOutputStream(tempBody))) {
+                in.transferTo(out);
+            }
+            long compressedSize = Files.size(tempBody);
+            if (compressedSize > maxDiskBytes) {
+                LOGGER.debug("{} is too big for the response cache ({} bytes compressed).", request.uri(), compressedSize);
+                deleteQuietly(tempBody);
+                deleteQuietly(tempMetadata);
+                remove(key);
+                return;
+            }
+            CachedResponse entry = new CachedResponse(key, request.uri().toString(), version.name(), charset.name(),
+                    etag, lastModified, body.size(), compressedSize, System.currentTimeMillis(), maxAgeMillis,
+                    cacheControl.noCache());
+            Files.writeString(tempMetadata, gson.toJson(entry), StandardCharsets.UTF_8);
+            synchronized (this) {
+                try {
+                    // body first: a metadata file is only ever visible next to its complete body
+                    Files.move(tempBody, bodyFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.move(tempMetadata, metadataFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // the body file may not belong to the previous entry anymore
+                    remove(key);
+                    throw e;
+                }
+                CachedResponse previous = entries.put(key, entry);
+                diskBytes += compressedSize - (previous == null ? 0 : previous.compressedSize());
+                forgetMemory(key);
+                evictDisk();
+            }
+            LOGGER.debug("Cached {} ({} bytes, {} compressed, max-age {} ms).", request.uri(), body.size(), compressedSize, maxAgeMillis);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not cache {}: {}", request.uri(), e.getMessage());
+            deleteQuietly(tempBody);
+            deleteQuietly(tempMetadata);
+        }
+    }
+
+    /**
+     * The server confirmed the stored response with a 304: it is fresh again for the {@code max-age} of that answer.
+     *
+     * @return the refreshed entry, {@code null} if the entry was evicted or replaced in the meantime
+     */
+    public CachedResponse refresh(CachedResponse entry, HttpHeaders headers) {
+        if (!enabled) {
+            return null;
+        }
+        CacheControl cacheControl = cacheControl(headers);
+        long maxAgeMillis = headers.firstValue("Cache-Control").isPresent()
+                ? maxAgeMillis(cacheControl, headers)
+                : entry.maxAgeMillis();
+        CachedResponse refreshed = entry.refreshed(System.currentTimeMillis(), maxAgeMillis,
+                cacheControl.noCache() || entry.noCache());
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, entry.key(), METADATA_SUFFIX + TEMP_SUFFIX);
+            Files.writeString(temp, gson.toJson(refreshed), StandardCharsets.UTF_8);
+            synchronized (this) {
+                if (entries.get(entry.key()) != entry) {
+                    deleteQuietly(temp);
+                    return null;
+                }
+                Files.move(temp, metadataFile(entry.key()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // same body, so a copy in memory stays valid
+                entries.put(entry.key(), refreshed);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not update cache metadata of {}: {}", entry.uri(), e.getMessage());
+            deleteQuietly(temp);
+            synchronized (this) {
+                if (entries.get(entry.key()) != entry) {
+                    return null;
+                }
+                // the next start reads the old metadata, which is merely stale
+                entries.put(entry.key(), refreshed);
+            }
+        }
+        return refreshed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private synchronized void remove(String key) {
+        CachedResponse previous = entries.remove(key);
+        if (previous == null) {
+            return;
+        }
+        diskBytes -= previous.compressedSize();
+        forgetMemory(key);
+        deleteFiles(key);
+    }
+
+    // only if it is still stored, the files may belong to a newer entry already
+    private synchronized void remove(CachedResponse entry) {
+        if (entries.get(entry.key()) == entry) {
+            remove(entry.key());
+        }
+    }
+
+    /**
+     * Keeps a small body on the heap.
+     *
+     * @return whether the entry is still the stored one, i.e. the body read belongs to it
+     */
+    private boolean remember(CachedResponse entry, ByteBuffer compressed) {
+        int length = compressed.capacity();
+        // a heap copy, so small hits do not pin a mapping each
+        ByteBuffer copy = length > maxMemoryBytes / MEMORY_ENTRY_FRACTION
+                ? null
+                : ByteBuffer.allocate(length).put(compressed.duplicate().rewind()).flip();
+        synchronized (this) {
+            if (entries.get(entry.key()) != entry) {
+                return false;
+            }
+            if (copy == null) {
+                return true;
+            }
+            String key = entry.key();
+            ByteBuffer previous = memory.put(key, copy);
+            memoryBytes += length - (previous == null ? 0 : previous.capacity());
+            Iterator<Map.Entry<String, ByteBuffer>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().capacity();
+                eldest.remove();
+            }
+        }
+        return true;
+    }
+
+    // caller holds the lock
+    private void forgetMemory(String key) {
+        ByteBuffer previous = memory.remove(key);
+        if (previous != null) {
+            memoryBytes -= previous.capacity();
+        }
+    }
+
+    // caller holds the lock
+    private void evictDisk() {
+        Iterator<CachedResponse> eldest = entries.values().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            CachedResponse entry = eldest.next();
+            eldest.remove();
+            diskBytes -= entry.compressedSize();
+            forgetMemory(entry.key());
+            deleteFiles(entry.key());
+            LOGGER.debug("Evicted {} from the response cache.", entry.uri());
+        }
+    }
+
+    private void deleteFiles(String key) {
+        // metadata first, so a crash in between leaves an orphan body that the next start removes
+        deleteQuietly(metadataFile(key));
+        deleteQuietly(bodyFile(key));
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.debug("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path bodyFile(String key) {
+        return key == null ? null : directory.resolve(key + BODY_SUFFIX);
+    }
+
+    private Path metadataFile(String key) {
+        return directory.resolve(key + METADATA_SUFFIX);
+    }
+
+    private long maxAgeMillis(CacheControl cacheControl, HttpHeaders headers) {
+        if (cacheControl.maxAgeSeconds() < 0) {
+            return defaultMaxAgeMillis;
+        }
+        long ageSeconds = headers.firstValueAsLong("Age").orElse(0);
+        return Math.max(0, cacheControl.maxAgeSeconds() - ageSeconds) * 1000;
+    }
+
+    private static CacheControl cacheControl(HttpHeaders headers) {
+        boolean noStore = false;
+        boolean noCache = false;
+        long maxAge = -1;
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                String normalized = directive.trim().toLowerCase(Locale.ROOT);
+                if (normalized.equals("no-store")) {
+                    noStore = true;
+                } else if (normalized.equals("no-cache") || normalized.startsWith("no-cache=")) {
+                    noCache = true;
+                } else if (normalized.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(normalized.substring("max-age=".length()).replace("\"", "").trim());
+                    } catch (NumberFormatException e) {
+                        // an invalid max-age means stale
+                        maxAge = 0;
+                    }
+                }
+            }
+        }
+        return new CacheControl(noStore, noCache, maxAge);
+    }
+
+    /**
+     * SHA-256 of the URL and the request headers (sorted, names lower-case), as hex.
+     */
+    static String key(FetchRequest request) {
+        StringBuilder material = new StringBuilder(request.uri().toString());
+        Map<String, String> headers = new TreeMap<>();
+        request.headers().forEach((name, value) -> headers.put(name.toLowerCase(Locale.ROOT), value));
+        headers.forEach((name, value) -> material.append('\n').append(name).append(':').append(value));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(material.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    // pages compress well even at the fastest level, and storing must not slow down the monitor much
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 16 * 1024);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
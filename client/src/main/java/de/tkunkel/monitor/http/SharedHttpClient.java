@@ -0,0 +1,89 @@
+package de.tkunkel.monitor.http;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The one {@link HttpClient} shared by all monitors and the Telegram sender.
+ * <p>
+ * The JDK client keeps a connection pool per host and multiplexes HTTP/2 streams over a single connection,
+ * so reusing one instance saves the TCP/TLS setup that a client per call repeats every time.
+ * Servers that do not speak HTTP/2 are served over HTTP/1.1 via ALPN negotiation.
+ */
+@Component
+public class SharedHttpClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String KEEP_ALIVE_H2_PROPERTY = "jdk.httpclient.keepalive.timeout.h2";
+
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public SharedHttpClient(@Value("${monitor.http.connect-timeout:10s}") Duration connectTimeout,
+                            @Value("${monitor.http.request-timeout:30s}") Duration requestTimeout,
+                            @Value("${monitor.http.keep-alive:300s}") Duration keepAlive) {
+        // the JDK reads the idle timeout of pooled connections from system properties only
+        setIfAbsent(KEEP_ALIVE_PROPERTY, keepAlive);
+        setIfAbsent(KEEP_ALIVE_H2_PROPERTY, keepAlive);
+
+        this.requestTimeout = requestTimeout;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        LOGGER.info("Shared HTTP client created (connectTimeout={}, requestTimeout={}, keepAlive={}).",
+                connectTimeout, requestTimeout, keepAlive);
+    }
+
+    public static SharedHttpClient withDefaults() {
+        return new SharedHttpClient(Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+
+    private static void setIfAbsent(String property, Duration value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, Long.toString(value.toSeconds()));
+        }
+    }
+
+    /**
+     * Request builder with the configured request timeout already applied.
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(requestTimeout);
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        HttpResponse<T> response = httpClient.send(request, bodyHandler);
+        if (response.version() != HttpClient.Version.HTTP_2) {
+            LOGGER.debug("{} answered with {} instead of HTTP/2.", request.uri().getHost(), response.version());
+        }
+        return response;
+    }
+
+    public HttpClient getClient() {
+        return httpClient;
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+package de.tkunkel.monitor.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response body kept in memory up to a threshold and spilled to a temp file beyond it, so a multi-MB vendor page
+ * does not cost multi-MB of heap per running monitor. The body can be read several times via {@link #open()};
+ * {@link #close()} removes the temp file.
+ * <p>
+ * Bodies served by the {@link ResponseCache} are read-only views on the gzip-compressed cache entry, usually a
+ * memory-mapped file; they are inflated while reading, never copied to the heap as a whole.
+ */
+public class SpooledBody implements AutoCloseable {
+    private final long threshold;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path file;
+    private OutputStream fileOut;
+    private long size;
+    private ByteBuffer gzip;
+
+    public SpooledBody(long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Read-only body backed by gzip-compressed bytes.
+     *
+     * @param size size of the inflated body
+     */
+    static SpooledBody ofGzip(ByteBuffer gzip, long size) {
+        SpooledBody body = new SpooledBody(0);
+        body.memory = null;
+        body.gzip = gzip;
+        body.size = size;
+        return body;
+    }
+
+    public static SpooledBody empty() {
+        return new SpooledBody(0);
+    }
+
+    public static SpooledBody of(byte[] content) {
+        SpooledBody body = new SpooledBody(content.length);
+        body.write(content, 0, content.length);
+        return body;
+    }
+
+    public void write(byte[] buffer, int offset, int length) {
+        if (gzip != null) {
+            throw new IllegalStateException("Cached bodies are read-only");
+        }
+        try {
+            if (fileOut == null && size + length > threshold) {
+                file = Files.createTempFile("monitor-body-", ".spool");
+                fileOut = Files.newOutputStream(file);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if (fileOut != null) {
+                fileOut.write(buffer, offset, length);
+            } else {
+                memory.write(buffer, offset, length);
+            }
+            size += length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public InputStream open() throws IOException {
+        if (gzip != null) {
+            return new GZIPInputStream(new ByteBufferInputStream(gzip.duplicate()), 16 * 1024);
+        }
+        if (fileOut == null) {
+            return new ByteArrayInputStream(memory.toByteArray());
+        }
+        fileOut.flush();
+        return Files.newInputStream(file);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            fileOut.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
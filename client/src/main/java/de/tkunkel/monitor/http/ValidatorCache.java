@@ -0,0 +1,51 @@
+package de.tkunkel.monitor.http;
+
+import com.google.gson.Gson;
+import de.tkunkel.monitor.state.StateStore;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Remembers the {@code ETag}/{@code Last-Modified} validators of the last successful fetch per cache key and URL.
+ * The validators live in the {@link StateStore} next to the monitor state, so conditional requests keep working
+ * across restarts.
+ */
+@Component
+public class ValidatorCache {
+    private static final String KEY_PREFIX = "http-validators|";
+
+    private final Gson gson = new Gson();
+    private final StateStore stateStore;
+
+    public record Validators(String etag, String lastModified) {
+        public boolean isEmpty() {
+            return etag == null && lastModified == null;
+        }
+    }
+
+    public ValidatorCache(StateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
+    private static String key(FetchRequest request) {
+        return KEY_PREFIX + request.cacheKey() + "|" + request.uri();
+    }
+
+    public Validators get(FetchRequest request) {
+        String stored = stateStore.get(key(request));
+        return stored == null ? null : gson.fromJson(stored, Validators.class);
+    }
+
+    public void put(FetchRequest request, Validators newValidators) {
+        String key = key(request);
+        if (newValidators.isEmpty()) {
+            stateStore.remove(key);
+            return;
+        }
+        String json = gson.toJson(newValidators);
+        if (!Objects.equals(json, stateStore.get(key))) {
+            stateStore.put(key, json);
+        }
+    }
+}
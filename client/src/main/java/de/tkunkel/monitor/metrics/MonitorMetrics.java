@@ -0,0 +1,108 @@
+package de.tkunkel.monitor.metrics;
+
+import de.tkunkel.monitor.http.FetchTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * All meters of the monitor runs in one place, so the names and tags stay consistent. Timers are tagged with
+ * {@code monitor} and, for network phases, {@code host}; percentile histograms are switched on via
+ * {@code management.metrics.distribution.percentiles-histogram.monitor}.
+ * <p>
+ * Phases of one page fetch: {@code monitor.fetch.dns} (name resolution), {@code monitor.fetch.ttfb} (request sent
+ * until response headers, including connect and TLS) and {@code monitor.fetch.download} (reading the body).
+ */
+@Component
+public class MonitorMetrics {
+    private static final MonitorMetrics NOOP = new MonitorMetrics(new CompositeMeterRegistry());
+
+    private final MeterRegistry registry;
+
+    public MonitorMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Metrics that go nowhere, for code running outside the Spring context.
+     */
+    public static MonitorMetrics noop() {
+        return NOOP;
+    }
+
+    public void recordFetch(String monitor, String host, FetchTimings timings) {
+        if (timings.dnsNanos() >= 0) {
+            timer("monitor.fetch.dns", "monitor", monitor, "host", host).record(timings.dnsNanos(), TimeUnit.NANOSECONDS);
+        }
+        timer("monitor.fetch.ttfb", "monitor", monitor, "host", host).record(timings.ttfbNanos(), TimeUnit.NANOSECONDS);
+        timer("monitor.fetch.download", "monitor", monitor, "host", host).record(timings.downloadNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordParse(String monitor, long nanos) {
+        timer("monitor.parse", "monitor", monitor).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param operation {@code read}, {@code write} or {@code commit}
+     */
+    public void recordStateIo(String monitor, String operation, long nanos) {
+        timer("monitor.state.io", "monitor", monitor, "operation", operation).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRun(String monitor, String status, Duration duration) {
+        timer("monitor.run", "monitor", monitor, "status", status).record(duration);
+    }
+
+    public void recordNotificationLatency(long nanos) {
+        timer("monitor.notification.latency").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countChange(String monitor) {
+        counter("monitor.changes", "monitor", monitor).increment();
+    }
+
+    /**
+     * @param reason {@code http-304} or {@code fingerprint}
+     */
+    public void countNotModified(String monitor, String reason) {
+        counter("monitor.not.modified", "monitor", monitor, "reason", reason).increment();
+    }
+
+    /**
+     * @param kind {@code fresh} (served without asking the server) or {@code revalidated} (confirmed by a 304)
+     */
+    public void countCacheHit(String monitor, String kind) {
+        counter("monitor.fetch.cache.hits", "monitor", monitor, "kind", kind).increment();
+    }
+
+    public void countFailure(String monitor, String status) {
+        counter("monitor.failures", "monitor", monitor, "status", status).increment();
+    }
+
+    public void countSkipped(String monitor) {
+        counter("monitor.skipped", "monitor", monitor).increment();
+    }
+
+    public void countNotification(String result) {
+        counter("monitor.notifications", "result", result).increment();
+    }
+
+    public void gauge(String name, Supplier<Number> value, String... tags) {
+        Gauge.builder(name, value).tags(tags).register(registry);
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).register(registry);
+    }
+
+    private Counter counter(String name, String... tags) {
+        return Counter.builder(name).tags(tags).register(registry);
+    }
+}
@@ -1,44 +1,75 @@
 package de.tkunkel.monitor.monitors; // Assuming a package structure
 
-import de.tkunkel.monitor.starter.Starter;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import de.tkunkel.monitor.circuit.CircuitBreakers;
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.extract.LinkClassifier;
+import de.tkunkel.monitor.extract.StreamingExtractor;
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.http.FetchRequest;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.HostLimiter;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.http.ResponseCache;
+import de.tkunkel.monitor.http.SharedHttpClient;
+import de.tkunkel.monitor.http.ValidatorCache;
+import de.tkunkel.monitor.state.LogStateStore;
 import org.jsoup.nodes.Element; // Import Element
-import org.jsoup.select.Elements; // Import Elements
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpClient.Version; // Import Version for clarity
-import java.nio.charset.StandardCharsets; // Needed if processing body
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List; // Import List
-import java.util.ArrayList; // Import ArrayList
+import java.util.Map;
+import java.util.function.Predicate;
 
 @Service
-public class Minecraft extends Monitor {
-    private final TelegramMessageSender telegramMessageSender;
+public class Minecraft extends PageMonitor {
     private static final Logger LOGGER = LoggerFactory.getLogger(Minecraft.class);
 
     private static final String URL =
             "https://www.minecraft.net/en-us/download/server/bedrock";
 
+    // every matching server download is tracked as its own item; this only guards against a runaway page
+    static final int MAX_SERVER_ENTRIES = 32;
+
+    private static final StreamingExtractor LINK_EXTRACTOR = new StreamingExtractor("a[href]");
+
+    // the URL has to point to the Linux Bedrock server zip (case-insensitive), not to the preview
+    static final Predicate<Element> SERVER_ZIP_LINK = LinkClassifier.of(List.of("bedrock", "linux", ".zip"), List.of("preview"))
+            .forUrlAttribute("href", URL);
+
     // User-Agent from the image
     private static final String BROWSER_USER_AGENT =
             "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/136.0.0.0 Safari/537.36";
 
-    public Minecraft(TelegramMessageSender telegramMessageSender) {
-        this.telegramMessageSender = telegramMessageSender;
+    public Minecraft(TelegramMessageSender telegramMessageSender, PageFetcher pageFetcher) {
+        super(telegramMessageSender, pageFetcher);
     }
 
 
-    public static void main(String[] args) {
-        var serverEntries = new Minecraft(new TelegramMessageSender()).collectServerEntries();
+    public static void main(String[] args) throws IOException {
+        SharedHttpClient httpClient = SharedHttpClient.withDefaults();
+        // a scratch state of its own: the stored validators of the service would turn this into a 304 without
+        // content, and nothing here may touch the state or history of the service
+        Path scratch = Files.createTempDirectory("minecraft-monitor");
+        LogStateStore stateStore = new LogStateStore(scratch.resolve("monitor-state.log").toString());
+        PageFetcher pageFetcher = new PageFetcher(httpClient, new ValidatorCache(stateStore),
+                new HostLimiter(4, 2.0), CircuitBreakers.disabled(), ResponseCache.disabled(), DataSize.ofKilobytes(256));
+        Minecraft minecraft = new Minecraft(TelegramMessageSender.withDefaults(httpClient), pageFetcher);
+        minecraft.setStateStore(stateStore);
+        minecraft.setChangeHistory(new ChangeHistory(scratch.resolve("history").toString(), 64, 1000, Duration.ofDays(365)));
+        var serverEntries = minecraft.collectServerEntries();
+        stateStore.close();
+        FileSystemUtils.deleteRecursively(scratch);
         if (serverEntries.isEmpty()) {
             LOGGER.info("No changelog entries found containing 'Bedrock' in the text.");
             // Optional: Inspect the HTML structure manually or print sample link text
@@ -46,71 +77,24 @@ public class Minecraft extends Monitor {
             // potentialChangelogLinks.stream().limit(10).forEach(el -> LOGGER.info("  " + el.text()));
         } else {
             LOGGER.info("Found " + serverEntries.size() + " Bedrock changelog entries:");
-            for (String entry : serverEntries) {
-                LOGGER.info(entry);
+            for (Item entry : serverEntries) {
+                LOGGER.info(entry.key() + ": " + entry.value());
             }
         }
 
     }
 
-    public List<String> collectServerEntries() {
-        LOGGER.info("Attempting to download URL using HTTP/2: " + URL);
-
-        // Create an HttpClient that *must* use HTTP/2
-        HttpClient httpClient = HttpClient.newBuilder()
-                .version(Version.HTTP_2) // Explicitly request HTTP/2
-                // Optional: configure timeouts, follow redirects, etc.
-                // .connectTimeout(java.time.Duration.ofSeconds(10))
-                // .followRedirects(HttpClient.Redirect.NORMAL) // Default is NEVER
-                .build();
-
-        // Build the HTTP GET request with headers from the image
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(URL))
-
-                // -----------------------------------------------------------------------------
-                // Using headers from the image that are generally safe and allowed by java.net.http.HttpClient
-                .header("User-Agent", BROWSER_USER_AGENT)
-                .header("Referer", "https://feedback.minecraft.net/hc/en-us/sections/360001186971-Release-Changelogs")
-                .header("X-Requested-With", "XMLHttpRequest") // Indicates an XHR request
-                // -----------------------------------------------------------------------------
-
-                .GET() // Specify GET method (default)
-                .build();
-
-        try {
-            // Send the request and get the response body as a String
-            HttpResponse<String> response = httpClient.send(
-                    request,
-                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)
-            );
-
+    public List<Item> collectServerEntries() {
+        FetchRequest request = createFetchRequest();
+        LOGGER.info("Attempting to download URL: {}", request.uri());
+        try (FetchResult result = pageFetcher.fetch(request)) {
             // Check the status code
-            int statusCode = response.statusCode();
-            LOGGER.info("Response Status Code: " + statusCode);
-
-            // --- VERIFY PROTOCOL ---
-            Version negotiatedVersion = response.version();
-            LOGGER.info("Negotiated Protocol Version: " + negotiatedVersion);
-
-            if (negotiatedVersion != Version.HTTP_2) {
-                System.err.println(
-                        "ERROR: Did NOT use HTTP/2 as required. Negotiated: " +
-                                negotiatedVersion
-                );
-                // Exit or throw if strictly requiring HTTP/2
-                System.exit(1);
-            } else {
-                LOGGER.info("SUCCESS: Used HTTP/2 as required.");
-            }
-            // -----------------------
-
-
-            return parseResponse(statusCode, response);
+            LOGGER.info("Response Status Code: {} ({})", result.statusCode(), result.version());
+            return parseResponse(result, Integer.MAX_VALUE);
 
         } catch (IOException e) {
             System.err.println(
-                    "An I/O error occurred during the HTTP/2 request (or HTTP/2 negotiation failed):"
+                    "An I/O error occurred during the HTTP request:"
             );
             LOGGER.error("Error: " + e);
         } catch (InterruptedException e) {
@@ -125,48 +109,59 @@ public class Minecraft extends Monitor {
         return Collections.emptyList();
     }
 
-    private static List<String> parseResponse(int statusCode, HttpResponse<String> response) {
-        List<String> serverZipEntires = new ArrayList<>();
-        if (statusCode == 200) {
-            LOGGER.info("Successfully downloaded content via HTTP/2 (Status 200 OK).");
-            // --- Jsoup parsing and filtering for Bedrock entries ---
-            try {
-                Document doc = Jsoup.parse(response.body(), URL); // Parse with base URL
-
-                // Select elements that likely contain the changelog titles.
-                // On ZenDesk/Help Center sites, these are often links.
-                // A common selector for article links in a list is "a.article-list-link"
-                // or simply targeting links within the main content area.
-                // Let's start by selecting all links and checking their text content.
-                Elements potentialChangelogLinks = doc.select("a");
-
-
-                LOGGER.info("Searching for 'Bedrock' changelog entries...");
-
-                for (Element linkElement : potentialChangelogLinks) {
-                    String linkText = linkElement.text(); // Get the visible text of the link
-                    String linkUrl = linkElement.absUrl("href"); // Get the absolute URL of the link
-
-                    // Check if the text contains "Bedrock" (case-insensitive)
-                    if (linkUrl.toLowerCase().contains("bedrock")
-                            && linkUrl.toLowerCase().contains("linux")
-                            && !linkUrl.toLowerCase().contains("preview")
-                            && linkUrl.toLowerCase().contains(".zip")
-                    ) {
-                        serverZipEntires.add("- " + linkText + " (" + linkUrl + ")");
-                    }
-                }
+    @Override
+    public FetchRequest createFetchRequest() {
+        // Build the HTTP GET request with headers from the image
+        return new FetchRequest(getConfigFileName(), URI.create(URL), Map.of(
+                // -----------------------------------------------------------------------------
+                // Using headers from the image that are generally safe and allowed by java.net.http.HttpClient
+                "User-Agent", BROWSER_USER_AGENT,
+                "Referer", "https://feedback.minecraft.net/hc/en-us/sections/360001186971-Release-Changelogs",
+                "X-Requested-With", "XMLHttpRequest" // Indicates an XHR request
+                // -----------------------------------------------------------------------------
+        ));
+    }
+
+    @Override
+    public List<Item> extractItems(FetchResult result) throws IOException {
+        try (InputStream body = result.openBody()) {
+            return extractServerEntries(body, result, MAX_SERVER_ENTRIES);
+        }
+    }
+
+    private static List<Item> extractServerEntries(InputStream body, FetchResult response, int maxEntries) throws IOException {
+        LOGGER.debug("Searching for 'Bedrock' server entries...");
+        // Links are matched as they are parsed; reading stops after maxEntries hits.
+        return LINK_EXTRACTOR.extract(body, response.charset(), URL, SERVER_ZIP_LINK,
+                linkElement -> toItem(linkElement.absUrl("href")), maxEntries);
+    }
+
+    /**
+     * Keyed by the download directory (e.g. {@code bin-linux}), which stays the same across versions while the
+     * file name changes.
+     */
+    static Item toItem(String url) {
+        int fileStart = url.lastIndexOf('/');
+        int directoryStart = fileStart > 0 ? url.lastIndexOf('/', fileStart - 1) : -1;
+        String key = directoryStart >= 0 ? url.substring(directoryStart + 1, fileStart) : url;
+        return new Item(key, url);
+    }
 
+    static List<Item> parseResponse(FetchResult response, int maxEntries) {
+        if (response.statusCode() == 200) {
+            LOGGER.info("Successfully downloaded content (Status 200 OK).");
+            // --- Streaming Jsoup extraction of the Bedrock entries ---
+            try (InputStream body = response.openBody()) {
+                return extractServerEntries(body, response, maxEntries);
             } catch (Exception e) {
                 System.err.println("Error parsing HTML or selecting elements with Jsoup: " + e.getMessage());
                 LOGGER.error("Error: " + e);
             }
             // ----------------------------------------------------
-            return serverZipEntires;
         } else {
             System.err.println("Failed to download content. Server returned non-200 status.");
-            // Print response body for non-200 codes
-            System.err.println("Response Body:\n" + response.body());
+            // Print the start of the response body for non-200 codes
+            System.err.println("Response Body:\n" + response.bodyPreview(2048));
         }
         return Collections.emptyList();
     }
@@ -182,17 +177,7 @@ public class Minecraft extends Monitor {
     }
 
     @Override
-    public void execute() {
-        List<String> strings = collectServerEntries();
-        String newValue = strings.get(0).trim();
-        String oldValue = readOldValue().trim();
-        LOGGER.debug("Old: " + oldValue);
-        LOGGER.debug("New: " + newValue);
-
-        if (!oldValue.equalsIgnoreCase(newValue)) {
-            storeNewValue(newValue);
-            String msg = ("⚒ Minecraft Bedrock Server Change detected!\nOld: '" + oldValue + "',\n New: '" + newValue + "'");
-            telegramMessageSender.sendMessage(msg);
-        }
+    protected String changeTitle() {
+        return "⚒ Minecraft Bedrock Server Change detected!";
     }
 }
@@ -1,16 +1,19 @@
 package de.tkunkel.monitor.monitors;
 
 import com.google.gson.Gson;
+import de.tkunkel.monitor.extract.FingerprintRegion;
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.state.StateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 @Service
@@ -19,36 +22,111 @@ public abstract class Monitor {
 
     private final Gson gson = new Gson();
 
+    private StateStore stateStore;
+    private ChangeHistory changeHistory;
+    private MonitorMetrics metrics = MonitorMetrics.noop();
+
     public abstract String getName();
 
     public abstract String getConfigFileName();
 
-    public abstract void execute();
+    public abstract MonitorOutcome execute();
+
+    /**
+     * Shortest polling interval for this monitor, {@code null} to use {@code monitor.scheduler.min-interval}.
+     */
+    public Duration getMinInterval() {
+        return null;
+    }
+
+    /**
+     * Longest polling interval for this monitor, {@code null} to use {@code monitor.scheduler.max-interval}.
+     */
+    public Duration getMaxInterval() {
+        return null;
+    }
+
+    /**
+     * Part of the page the content fingerprint is computed over, {@code null} for the whole body.
+     */
+    public FingerprintRegion getFingerprintRegion() {
+        return null;
+    }
+
+    /**
+     * State store key of the content fingerprint.
+     */
+    public String getFingerprintFileName() {
+        return getConfigFileName() + ".fingerprint";
+    }
 
     public void informAboutChange(String msg) {
         LOGGER.warn(msg);
     }
 
+    @Autowired
+    public void setStateStore(StateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
+    @Autowired
+    public void setChangeHistory(ChangeHistory changeHistory) {
+        this.changeHistory = changeHistory;
+    }
+
+    @Autowired
+    public void setMetrics(MonitorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    protected MonitorMetrics getMetrics() {
+        return metrics;
+    }
+
     public String readOldValue() {
+        long start = System.nanoTime();
+        String value = stateStore.get(getConfigFileName());
+        if (value == null) {
+            value = readLegacyFile(getConfigFileName());
+        }
+        metrics.recordStateIo(getName(), "read", System.nanoTime() - start);
+        return value;
+    }
+
+    public void storeNewValue(String data) {
+        long start = System.nanoTime();
+        stateStore.put(getConfigFileName(), data);
+        changeHistory.record(getConfigFileName(), data);
+        metrics.recordStateIo(getName(), "write", System.nanoTime() - start);
+    }
+
+    public String readFingerprint() {
+        long start = System.nanoTime();
+        String fingerprint = stateStore.get(getFingerprintFileName());
+        metrics.recordStateIo(getName(), "read", System.nanoTime() - start);
+        return fingerprint == null ? "" : fingerprint;
+    }
+
+    public void storeFingerprint(String fingerprint) {
+        long start = System.nanoTime();
+        stateStore.put(getFingerprintFileName(), fingerprint);
+        metrics.recordStateIo(getName(), "write", System.nanoTime() - start);
+    }
+
+    /**
+     * State written by older versions as one plain file per monitor; read once until the first new value is stored.
+     */
+    private static String readLegacyFile(String fileName) {
         StringBuilder rc = new StringBuilder();
         try {
-            if (!Files.exists(Path.of(getConfigFileName()))) {
+            if (!Files.exists(Path.of(fileName))) {
                 return rc.toString();
             }
-            List<String> strings = Files.readAllLines(Path.of(getConfigFileName()));
+            List<String> strings = Files.readAllLines(Path.of(fileName));
             strings.forEach(s -> rc.append(s).append("\n"));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         return rc.toString();
     }
-
-    public void storeNewValue(String data) {
-        try (FileWriter fw = new FileWriter(getConfigFileName())) {
-            fw.write(data);
-            fw.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -1,40 +1,231 @@
 package de.tkunkel.monitor.monitors;
 
+import de.tkunkel.monitor.circuit.CircuitBreaker;
+import de.tkunkel.monitor.circuit.CircuitBreakers;
+import de.tkunkel.monitor.circuit.CircuitOpenException;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.sharding.ShardAssignment;
+import de.tkunkel.monitor.state.StateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class MonitorExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(MonitorExecutor.class);
     private final List<Monitor> monitors; // <-- Declaring a list of the interface
+    // the subset of the monitors this instance runs, all of them unless sharded
+    private final List<Monitor> ownedMonitors;
+    private final ShardAssignment shards;
+    private final StateStore stateStore;
+    private final CircuitBreakers circuitBreakers;
+    private final MonitorMetrics metrics;
+    private final ObjectProvider<MonitorPipeline> pipeline;
+    private final boolean parallel;
+    private final Duration monitorTimeout;
 
-    // Spring automatically finds all beans implementing 'Monitor' and injects them here
-    public MonitorExecutor(List<Monitor> monitors) {
-        this.monitors = monitors;
-        LOGGER.info("MonitorExecutor initialized with {} monitors.", monitors.size());
+    // Spring automatically finds all beans implementing 'Monitor' and injects them here,
+    // monitors that are not beans (e.g. from the definitions file) come from the providers
+    public MonitorExecutor(List<Monitor> monitors,
+                           ObjectProvider<MonitorProvider> monitorProviders,
+                           StateStore stateStore,
+                           CircuitBreakers circuitBreakers,
+                           MonitorMetrics metrics,
+                           ShardAssignment shards,
+                           ObjectProvider<MonitorPipeline> pipeline,
+                           @Value("${monitor.executor.parallel:true}") boolean parallel,
+                           @Value("${monitor.executor.monitor-timeout:120s}") Duration monitorTimeout) {
+        List<Monitor> allMonitors = new ArrayList<>(monitors);
+        monitorProviders.orderedStream().forEach(provider -> allMonitors.addAll(provider.getMonitors()));
+        this.monitors = List.copyOf(allMonitors);
+        this.ownedMonitors = this.monitors.stream().filter(monitor -> shards.owns(monitor.getName())).toList();
+        this.shards = shards;
+        this.stateStore = stateStore;
+        this.circuitBreakers = circuitBreakers;
+        this.metrics = metrics;
+        this.pipeline = pipeline;
+        this.parallel = parallel;
+        this.monitorTimeout = monitorTimeout;
+        LOGGER.info("MonitorExecutor initialized with {} of {} monitors (shard {}/{}, parallel={}, timeout={}).",
+                ownedMonitors.size(), this.monitors.size(), shards.getIndex(), shards.getCount(), parallel, monitorTimeout);
     }
 
-    public void execute() {
-        if (monitors == null || monitors.isEmpty()) {
-            LOGGER.warn("No monitors configured to execute.");
-            return;
+    public List<MonitorResult> execute() {
+        if (ownedMonitors.isEmpty()) {
+            LOGGER.warn("No monitors configured to execute{}.", shards.isSharded() ? " on shard " + shards.getIndex() : "");
+            return List.of();
         }
-        monitors.forEach(monitor -> {
-            LOGGER.info("Going to start monitor: " + monitor.getName());
-            try {
-                monitor.execute();
-                LOGGER.info("Monitor {} finished successfully.", monitor.getName());
-            } catch (Exception e) {
-                LOGGER.error("Error executing monitor: {}", monitor.getName(), e);
+        return execute(ownedMonitors);
+    }
+
+    /**
+     * Runs the given subset of the monitors, e.g. the ones the scheduler found due.
+     */
+    public List<MonitorResult> execute(List<Monitor> toRun) {
+        long start = System.nanoTime();
+        List<MonitorResult> results = parallel ? executeParallel(toRun) : executeSequential(toRun);
+        // one fsync for all state changes of the run
+        long commitStart = System.nanoTime();
+        stateStore.commit();
+        metrics.recordStateIo("all", "commit", System.nanoTime() - commitStart);
+        results.forEach(this::recordMetrics);
+        long skipped = results.stream().filter(result -> result.status() == MonitorResult.Status.SKIPPED).count();
+        long failed = results.stream().filter(result -> !result.isSuccess()).count() - skipped;
+        LOGGER.info("All monitors processed in {} ms ({} failed, {} skipped of {}).",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed, skipped, results.size());
+        return results;
+    }
+
+    private List<MonitorResult> executeSequential(List<Monitor> toRun) {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<MonitorResult> results = new ArrayList<>(toRun.size());
+            for (Monitor monitor : toRun) {
+                CircuitBreaker breaker = circuitBreakers.forMonitor(monitor.getName());
+                results.add(circuitBreakers.tryAcquire(breaker)
+                        ? runWithTimeout(monitor, breaker, executor)
+                        : skipped(monitor));
             }
-        });
-        LOGGER.info("All monitors processed.");
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Hands all monitors to the {@link MonitorPipeline}, whose stages overlap the network waits of some monitors with
+     * the parsing and state I/O of others; the run takes roughly as long as the slowest monitor instead of the sum of
+     * all of them.
+     */
+    private List<MonitorResult> executeParallel(List<Monitor> toRun) {
+        MonitorPipeline monitorPipeline = pipeline.getObject();
+        List<CircuitBreaker> breakers = new ArrayList<>(toRun.size());
+        List<MonitorPipeline.Submission> submissions = new ArrayList<>(toRun.size());
+        for (Monitor monitor : toRun) {
+            // open circuits are sorted out before they take a fetch worker
+            CircuitBreaker breaker = circuitBreakers.forMonitor(monitor.getName());
+            breakers.add(breaker);
+            LOGGER.debug("Going to start monitor: {}", monitor.getName());
+            submissions.add(circuitBreakers.tryAcquire(breaker) ? monitorPipeline.submit(monitor, monitorTimeout) : null);
+        }
+
+        List<MonitorResult> results = new ArrayList<>(toRun.size());
+        for (int i = 0; i < toRun.size(); i++) {
+            MonitorPipeline.Submission submission = submissions.get(i);
+            results.add(submission == null
+                    ? skipped(toRun.get(i))
+                    : awaitSubmission(toRun.get(i), breakers.get(i), submission));
+        }
+        return results;
+    }
+
+    private MonitorResult awaitSubmission(Monitor monitor, CircuitBreaker breaker, MonitorPipeline.Submission submission) {
+        try {
+            MonitorOutcome outcome = submission.future().get();
+            LOGGER.debug("Monitor {} finished successfully ({}).", monitor.getName(), outcome);
+            circuitBreakers.recordSuccess(breaker);
+            return MonitorResult.success(monitor.getName(), outcome, submission.duration());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                LOGGER.error("Monitor {} timed out after {}.", monitor.getName(), monitorTimeout);
+                circuitBreakers.recordFailure(breaker);
+                return MonitorResult.timedOut(monitor.getName(), submission.duration());
+            }
+            return failed(monitor, breaker, e.getCause(), submission.duration());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreakers.recordFailure(breaker);
+            return MonitorResult.failed(monitor.getName(), submission.duration(), e);
+        }
+    }
+
+    private MonitorResult runWithTimeout(Monitor monitor, CircuitBreaker breaker, ExecutorService executor) {
+        LOGGER.debug("Going to start monitor: {}", monitor.getName());
+        long start = System.nanoTime();
+        Future<MonitorOutcome> future = executor.submit(monitor::execute);
+        try {
+            MonitorOutcome outcome = future.get(monitorTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            LOGGER.debug("Monitor {} finished successfully ({}).", monitor.getName(), outcome);
+            circuitBreakers.recordSuccess(breaker);
+            return MonitorResult.success(monitor.getName(), outcome, elapsedSince(start));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOGGER.error("Monitor {} timed out after {}.", monitor.getName(), monitorTimeout);
+            circuitBreakers.recordFailure(breaker);
+            return MonitorResult.timedOut(monitor.getName(), elapsedSince(start));
+        } catch (ExecutionException e) {
+            return failed(monitor, breaker, e.getCause(), elapsedSince(start));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            circuitBreakers.recordFailure(breaker);
+            return MonitorResult.failed(monitor.getName(), elapsedSince(start), e);
+        }
     }
 
+    private MonitorResult failed(Monitor monitor, CircuitBreaker breaker, Throwable cause, Duration duration) {
+        if (cause instanceof CircuitOpenException) {
+            // the host is down, that says nothing about the monitor itself
+            breaker.release();
+            LOGGER.debug("Monitor {} skipped: {}", monitor.getName(), cause.getMessage());
+            return MonitorResult.skipped(monitor.getName(), duration);
+        }
+        LOGGER.error("Error executing monitor: {}", monitor.getName(), cause);
+        circuitBreakers.recordFailure(breaker);
+        return MonitorResult.failed(monitor.getName(), duration, cause);
+    }
+
+    private void recordMetrics(MonitorResult result) {
+        metrics.recordRun(result.monitorName(), result.status().name(), result.duration());
+        switch (result.status()) {
+            case FAILED, TIMED_OUT -> metrics.countFailure(result.monitorName(), result.status().name());
+            case SKIPPED -> metrics.countSkipped(result.monitorName());
+            case SUCCESS -> {
+            }
+        }
+    }
+
+    private static MonitorResult skipped(Monitor monitor) {
+        LOGGER.debug("Monitor {} skipped, its circuit is open.", monitor.getName());
+        return MonitorResult.skipped(monitor.getName(), Duration.ZERO);
+    }
+
+    private static Duration elapsedSince(long startNanos) {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * The monitors this instance runs.
+     */
+    public List<Monitor> getMonitors() {
+        return ownedMonitors;
+    }
+
+    /**
+     * All configured monitors; when sharded each name is followed by the shard that owns it.
+     */
     public List<String> getAllMonitorNames() {
-        return monitors.stream().map(Monitor::getName).toList();
+        if (!shards.isSharded()) {
+            return monitors.stream().map(Monitor::getName).toList();
+        }
+        return monitors.stream()
+                .map(monitor -> monitor.getName() + " (shard " + shards.ownerOf(monitor.getName()) + ")")
+                .toList();
+    }
+
+    public ShardAssignment getShards() {
+        return shards;
     }
 }
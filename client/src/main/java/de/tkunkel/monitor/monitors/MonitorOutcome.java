@@ -0,0 +1,19 @@
+package de.tkunkel.monitor.monitors;
+
+/**
+ * What a successful monitor run found out about its target.
+ */
+public enum MonitorOutcome {
+    /**
+     * The observed value differs from the stored one.
+     */
+    CHANGED,
+    /**
+     * The page was fetched and processed, the value is the same as before.
+     */
+    UNCHANGED,
+    /**
+     * The server answered 304 or the content fingerprint matched, nothing was parsed.
+     */
+    NOT_MODIFIED
+}
@@ -0,0 +1,212 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the monitors of a parallel run as a pipeline of stages, so the network waits of some monitors overlap with the
+ * parsing of others on all cores:
+ * <pre>
+ *   fetch (virtual threads) → extract (one platform thread per core) → diff + state I/O → notify
+ * </pre>
+ * Every stage has its own workers and a bounded queue (see {@link PipelineStage}); a stage that cannot keep up makes
+ * the stage before it wait. The queue depths are published as {@code monitor.pipeline.queue.size} and the busy
+ * workers as {@code monitor.pipeline.active}, both tagged with the stage, so the bottleneck shows up in the metrics.
+ * <p>
+ * {@link PageMonitor}s go through all stages; any other monitor runs its {@link Monitor#execute()} in the fetch stage.
+ * The timeout of a monitor starts when a fetch worker picks it up. A run that timed out is dropped before its next
+ * stage, except for the notification: once the new state is stored the message is always sent.
+ */
+@Component
+public class MonitorPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorPipeline.class);
+
+    private final PipelineStage fetch;
+    private final PipelineStage extract;
+    private final PipelineStage state;
+    private final PipelineStage notify;
+
+    /**
+     * Handle of a submitted monitor.
+     */
+    public static final class Submission {
+        private final Monitor monitor;
+        private final CompletableFuture<MonitorOutcome> future = new CompletableFuture<>();
+        private PageMonitor.Run run;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        // guarded by this; the fetch worker currently running the monitor, interrupted on timeout
+        private Thread fetchThread;
+
+        private Submission(Monitor monitor) {
+            this.monitor = monitor;
+            future.whenComplete((outcome, error) -> {
+                endNanos = System.nanoTime();
+                if (error instanceof TimeoutException) {
+                    interruptFetch();
+                }
+            });
+        }
+
+        public CompletableFuture<MonitorOutcome> future() {
+            return future;
+        }
+
+        /**
+         * Time from the start of the fetch stage until the outcome was known.
+         */
+        public Duration duration() {
+            long start = startNanos;
+            if (start == 0) {
+                return Duration.ZERO;
+            }
+            long end = future.isDone() ? endNanos : System.nanoTime();
+            return Duration.ofNanos(Math.max(0, end - start));
+        }
+
+        private synchronized void enterFetch() {
+            fetchThread = Thread.currentThread();
+        }
+
+        private synchronized void leaveFetch() {
+            fetchThread = null;
+            // an interrupt meant for this monitor must not hit the next one on the same worker
+            Thread.interrupted();
+        }
+
+        private synchronized void interruptFetch() {
+            if (fetchThread != null) {
+                fetchThread.interrupt();
+            }
+        }
+
+        private void complete(MonitorOutcome outcome) {
+            future.complete(outcome);
+        }
+
+        private void fail(Throwable error) {
+            if (run != null) {
+                run.close();
+            }
+            future.completeExceptionally(error);
+        }
+    }
+
+    public MonitorPipeline(MonitorMetrics metrics,
+                           @Value("${monitor.pipeline.fetch-workers:${monitor.executor.max-concurrency:64}}") int fetchWorkers,
+                           @Value("${monitor.pipeline.extract-workers:0}") int extractWorkers,
+                           @Value("${monitor.pipeline.state-workers:2}") int stateWorkers,
+                           @Value("${monitor.pipeline.notify-workers:1}") int notifyWorkers,
+                           @Value("${monitor.pipeline.queue-capacity:64}") int queueCapacity) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.fetch = new PipelineStage("fetch", fetchWorkers, queueCapacity, true);
+        this.extract = new PipelineStage("extract", extractWorkers > 0 ? extractWorkers : cores, queueCapacity, false);
+        this.state = new PipelineStage("state", stateWorkers, queueCapacity, false);
+        this.notify = new PipelineStage("notify", notifyWorkers, queueCapacity, false);
+        for (PipelineStage stage : stages()) {
+            metrics.gauge("monitor.pipeline.queue.size", stage::getQueueSize, "stage", stage.getName());
+            metrics.gauge("monitor.pipeline.active", stage::getActiveCount, "stage", stage.getName());
+        }
+        LOGGER.info("Monitor pipeline started (workers: fetch={}, extract={}, state={}, notify={}; queue capacity {}).",
+                fetch.getWorkers(), extract.getWorkers(), state.getWorkers(), notify.getWorkers(), queueCapacity);
+    }
+
+    private List<PipelineStage> stages() {
+        return List.of(fetch, extract, state, notify);
+    }
+
+    /**
+     * Queues the monitor for the fetch stage; blocks while that queue is full.
+     */
+    public Submission submit(Monitor monitor, Duration timeout) {
+        Submission submission = new Submission(monitor);
+        try {
+            fetch.submit(() -> fetchStage(submission, timeout));
+        } catch (RejectedExecutionException e) {
+            submission.fail(e);
+        }
+        return submission;
+    }
+
+    private void fetchStage(Submission submission, Duration timeout) {
+        submission.startNanos = System.nanoTime();
+        submission.future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        submission.enterFetch();
+        try {
+            if (!(submission.monitor instanceof PageMonitor page)) {
+                submission.complete(submission.monitor.execute());
+                return;
+            }
+            PageMonitor.Run run = page.fetchStage();
+            submission.run = run;
+            if (run.getOutcome() != null) {
+                submission.complete(run.getOutcome());
+                return;
+            }
+            handOver(extract, submission, true, this::extractStage);
+        } catch (RuntimeException | Error e) {
+            submission.fail(e);
+        } finally {
+            submission.leaveFetch();
+        }
+    }
+
+    private void extractStage(Submission submission) {
+        ((PageMonitor) submission.monitor).extractStage(submission.run);
+        handOver(state, submission, true, this::diffStage);
+    }
+
+    private void diffStage(Submission submission) {
+        PageMonitor.Run run = submission.run;
+        ((PageMonitor) submission.monitor).diffStage(run);
+        if (run.hasNotification()) {
+            // the new state is stored, so the message has to go out even if the monitor timed out meanwhile
+            handOver(notify, submission, false, this::notifyStage);
+        } else {
+            submission.complete(run.getOutcome());
+        }
+    }
+
+    private void notifyStage(Submission submission) {
+        PageMonitor.Run run = submission.run;
+        ((PageMonitor) submission.monitor).notifyStage(run);
+        submission.complete(run.getOutcome());
+    }
+
+    private static void handOver(PipelineStage stage, Submission submission, boolean skipIfDone, Consumer<Submission> work) {
+        try {
+            stage.submit(() -> {
+                if (skipIfDone && submission.future.isDone()) {
+                    // timed out while queued; nothing of the run is stored yet (validators and fingerprint are only
+                    // written by the diff), so the next run fetches and diffs the page in full
+                    submission.run.close();
+                    return;
+                }
+                try {
+                    work.accept(submission);
+                } catch (RuntimeException | Error e) {
+                    submission.fail(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            submission.fail(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stages().forEach(PipelineStage::shutdown);
+    }
+}
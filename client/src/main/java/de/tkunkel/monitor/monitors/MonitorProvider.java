@@ -0,0 +1,11 @@
+package de.tkunkel.monitor.monitors;
+
+import java.util.List;
+
+/**
+ * Source of monitors that are not Spring beans themselves, e.g. monitors built from configuration files.
+ */
+public interface MonitorProvider {
+
+    List<Monitor> getMonitors();
+}
@@ -0,0 +1,39 @@
+package de.tkunkel.monitor.monitors;
+
+import java.time.Duration;
+
+/**
+ * Result of a single monitor within one executor run; {@code outcome} is only set for successful runs.
+ */
+public record MonitorResult(String monitorName, Status status, MonitorOutcome outcome, Duration duration, Throwable error) {
+
+    public enum Status {
+        SUCCESS,
+        FAILED,
+        TIMED_OUT,
+        /**
+         * Not run because the circuit of the monitor or its host is open.
+         */
+        SKIPPED
+    }
+
+    public static MonitorResult success(String monitorName, MonitorOutcome outcome, Duration duration) {
+        return new MonitorResult(monitorName, Status.SUCCESS, outcome, duration, null);
+    }
+
+    public static MonitorResult failed(String monitorName, Duration duration, Throwable error) {
+        return new MonitorResult(monitorName, Status.FAILED, null, duration, error);
+    }
+
+    public static MonitorResult timedOut(String monitorName, Duration duration) {
+        return new MonitorResult(monitorName, Status.TIMED_OUT, null, duration, null);
+    }
+
+    public static MonitorResult skipped(String monitorName, Duration duration) {
+        return new MonitorResult(monitorName, Status.SKIPPED, null, duration, null);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+}
@@ -0,0 +1,257 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.diff.ItemCodec;
+import de.tkunkel.monitor.diff.ItemDiff;
+import de.tkunkel.monitor.diff.ItemDiffer;
+import de.tkunkel.monitor.extract.ContentFingerprint;
+import de.tkunkel.monitor.http.FetchRequest;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.http.ValidatorCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Monitor for a single web page: fetch, skip if unchanged, extract items, diff them against the stored items and
+ * notify about what was added, removed or changed. Subclasses only describe the request and the extraction.
+ * <p>
+ * Values stored by older versions are plain text, the value of the first item. The first run after the upgrade
+ * compares that text with its first item, notifies like older versions did if they differ, and then switches to the
+ * item list. A new monitor has an empty value and so notifies about its first items.
+ */
+public abstract class PageMonitor extends Monitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageMonitor.class);
+
+    // a change message lists at most this many items, the rest is summarized
+    private static final int MAX_LISTED_ITEMS = 10;
+
+    protected final TelegramMessageSender telegramMessageSender;
+    protected final PageFetcher pageFetcher;
+
+    protected PageMonitor(TelegramMessageSender telegramMessageSender, PageFetcher pageFetcher) {
+        this.telegramMessageSender = telegramMessageSender;
+        this.pageFetcher = pageFetcher;
+    }
+
+    public abstract FetchRequest createFetchRequest();
+
+    /**
+     * Pulls the items to watch out of a 200 response.
+     */
+    public abstract List<Item> extractItems(FetchResult result) throws IOException;
+
+    /**
+     * First line of the change message.
+     */
+    protected String changeTitle() {
+        return "⚒ " + getName() + " Change detected!";
+    }
+
+    /**
+     * One run of a page monitor, handed from stage to stage. The stages are separate methods so the
+     * {@link MonitorPipeline} can run them on workers sized for their kind of work: {@link #fetchStage()} waits for
+     * the network, {@link #extractStage} parses, {@link #diffStage} does the state I/O and {@link #notifyStage}
+     * hands the message to Telegram. {@link #execute()} runs all of them on the calling thread.
+     */
+    public static final class Run implements AutoCloseable {
+        private final FetchRequest request;
+        private FetchResult result;
+        private String fingerprint;
+        private ValidatorCache.Validators validators;
+        private List<Item> items;
+        private String message;
+        private MonitorOutcome outcome;
+
+        private Run(FetchRequest request) {
+            this.request = request;
+        }
+
+        /**
+         * Set once the outcome is known; after the fetch only if the page was not modified.
+         */
+        public MonitorOutcome getOutcome() {
+            return outcome;
+        }
+
+        public boolean hasNotification() {
+            return message != null;
+        }
+
+        /**
+         * Releases the response body of a run that is dropped before its extraction.
+         */
+        @Override
+        public void close() {
+            if (result != null) {
+                result.close();
+                result = null;
+            }
+        }
+    }
+
+    @Override
+    public MonitorOutcome execute() {
+        try (Run run = fetchStage()) {
+            if (run.getOutcome() != null) {
+                return run.getOutcome();
+            }
+            extractStage(run);
+            diffStage(run);
+            notifyStage(run);
+            return run.getOutcome();
+        }
+    }
+
+    /**
+     * Fetches the page; a 304 or an unchanged fingerprint finishes the run as {@link MonitorOutcome#NOT_MODIFIED}.
+     */
+    public Run fetchStage() {
+        Run run = new Run(createFetchRequest());
+        FetchResult result = fetch(run.request);
+        boolean keepBody = false;
+        try {
+            if (result.isNotModified()) {
+                LOGGER.debug("{} not modified since the last run, skipping.", getName());
+                getMetrics().countNotModified(getName(), "http-304");
+                run.outcome = MonitorOutcome.NOT_MODIFIED;
+                return run;
+            }
+            if (result.statusCode() != 200) {
+                throw new IllegalStateException(getName() + ": " + run.request.uri() + " returned HTTP " + result.statusCode()
+                        + ": " + result.bodyPreview(512));
+            }
+            run.fingerprint = result.fingerprint();
+            run.validators = result.validators();
+            if (run.fingerprint.equals(readFingerprint())) {
+                LOGGER.debug("{} content fingerprint unchanged, skipping.", getName());
+                getMetrics().countNotModified(getName(), "fingerprint");
+                // same content as the stored state, so the next run may get a 304 for it
+                pageFetcher.storeValidators(run.request, run.validators);
+                run.outcome = MonitorOutcome.NOT_MODIFIED;
+                return run;
+            }
+            run.result = result;
+            keepBody = true;
+            return run;
+        } finally {
+            if (!keepBody) {
+                result.close();
+            }
+        }
+    }
+
+    /**
+     * Parses the items out of the fetched body and releases the body.
+     */
+    public void extractStage(Run run) {
+        try (FetchResult result = run.result) {
+            long parseStart = System.nanoTime();
+            run.items = extractItems(result);
+            getMetrics().recordParse(getName(), System.nanoTime() - parseStart);
+        } catch (IOException e) {
+            throw new UncheckedIOException(getName() + ": could not read " + run.request.uri(), e);
+        } finally {
+            run.result = null;
+        }
+        if (run.items.isEmpty()) {
+            throw new IllegalStateException(getName() + ": no matching items found on " + run.request.uri());
+        }
+        run.items = ItemDiffer.distinctByKey(run.items);
+    }
+
+    /**
+     * Diffs the items against the stored ones and stores the new state; prepares the message if anything changed.
+     * Fingerprint and HTTP validators are only stored here, after the items made it through extraction and diff.
+     */
+    public void diffStage(Run run) {
+        List<Item> items = run.items;
+        String oldValue = readOldValue();
+        List<Item> oldItems = ItemCodec.decode(oldValue);
+        run.outcome = MonitorOutcome.UNCHANGED;
+        if (oldItems == null) {
+            String legacyValue = oldValue == null ? "" : oldValue.trim();
+            String newValue = items.getFirst().value().trim();
+            LOGGER.info("{}: no item state yet, storing {} items.", getName(), items.size());
+            storeNewValue(ItemCodec.encode(items));
+            if (!legacyValue.equalsIgnoreCase(newValue)) {
+                run.message = changeTitle() + "\nOld: '" + legacyValue + "',\n New: '" + newValue + "'";
+                run.outcome = MonitorOutcome.CHANGED;
+            }
+        } else {
+            ItemDiff diff = ItemDiffer.diff(oldItems, items);
+            LOGGER.debug("{}: {} items, {} differences.", getName(), items.size(), diff.size());
+            if (!diff.isEmpty()) {
+                storeNewValue(ItemCodec.encode(items));
+                run.message = changeMessage(diff);
+                run.outcome = MonitorOutcome.CHANGED;
+            }
+        }
+        storeFingerprint(run.fingerprint);
+        pageFetcher.storeValidators(run.request, run.validators);
+    }
+
+    public void notifyStage(Run run) {
+        if (run.message != null) {
+            telegramMessageSender.sendMessage(run.message);
+            getMetrics().countChange(getName());
+        }
+    }
+
+    /**
+     * Compact message: one line per changed ({@code ~}), added ({@code +}) and removed ({@code -}) item, up to
+     * {@value #MAX_LISTED_ITEMS} lines.
+     */
+    protected String changeMessage(ItemDiff diff) {
+        StringBuilder message = new StringBuilder(changeTitle());
+        int listed = 0;
+        for (ItemDiff.Change change : diff.changed()) {
+            if (listed++ < MAX_LISTED_ITEMS) {
+                message.append("\n~ ").append(change.key()).append(": ").append(change.oldValue())
+                        .append(" → ").append(change.newValue());
+            }
+        }
+        for (Item item : diff.added()) {
+            if (listed++ < MAX_LISTED_ITEMS) {
+                message.append("\n+ ").append(describe(item));
+            }
+        }
+        for (Item item : diff.removed()) {
+            if (listed++ < MAX_LISTED_ITEMS) {
+                message.append("\n- ").append(describe(item));
+            }
+        }
+        if (listed > MAX_LISTED_ITEMS) {
+            message.append("\n… and ").append(listed - MAX_LISTED_ITEMS).append(" more");
+        }
+        return message.toString();
+    }
+
+    private static String describe(Item item) {
+        return item.key().equals(item.value()) ? item.value() : item.key() + ": " + item.value();
+    }
+
+    private FetchResult fetch(FetchRequest request) {
+        LOGGER.debug("Attempting to download URL: {}", request.uri());
+        try {
+            FetchResult result = pageFetcher.fetch(request, new ContentFingerprint(getFingerprintRegion()));
+            LOGGER.debug("Response Status Code: {} ({})", result.statusCode(), result.version());
+            if (result.timings() != null) {
+                getMetrics().recordFetch(getName(), request.uri().getHost(), result.timings());
+            }
+            if (result.fromCache()) {
+                getMetrics().countCacheHit(getName(), result.timings() == null ? "fresh" : "revalidated");
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(getName() + ": request to " + request.uri() + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(getName() + ": request to " + request.uri() + " was interrupted", e);
+        }
+    }
+}
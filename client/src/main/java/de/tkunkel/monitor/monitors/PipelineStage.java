@@ -0,0 +1,68 @@
+package de.tkunkel.monitor.monitors;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of the {@link MonitorPipeline}: a fixed number of workers in front of a bounded queue. Handing a task to a
+ * stage whose queue is full blocks the handing thread, so a slow stage slows down the stages before it instead of
+ * piling up response bodies in memory.
+ */
+final class PipelineStage {
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    PipelineStage(String name, int workers, int queueCapacity, boolean virtualThreads) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Pipeline stage " + name + " needs at least one worker and queue slot");
+        }
+        this.name = name;
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("pipeline-" + name + "-", 0).factory()
+                : Thread.ofPlatform().name("pipeline-" + name + "-", 0).daemon().factory();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threads, PipelineStage::awaitQueueSpace);
+    }
+
+    private static void awaitQueueSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Pipeline is shut down.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a pipeline queue slot.", e);
+        }
+    }
+
+    /**
+     * Queues the task, waiting for space if the queue is full.
+     */
+    void submit(Runnable task) {
+        executor.execute(task);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    int getWorkers() {
+        return executor.getMaximumPoolSize();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+}
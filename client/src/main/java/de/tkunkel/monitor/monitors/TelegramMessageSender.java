@@ -1,17 +1,48 @@
 package de.tkunkel.monitor.monitors;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.tkunkel.monitor.http.SharedHttpClient;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Sends notifications to Telegram without blocking the monitors.
+ * <p>
+ * {@link #sendMessage} only puts the message into a bounded queue. A dedicated sender thread drains it, merges the
+ * messages for the same chat that arrive within {@code telegram.merge-window} into one message, and sends them while
+ * keeping Telegram's limits (one message per chat per {@code telegram.per-chat-interval}, at most
+ * {@code telegram.global-rate} messages per second overall). Texts longer than Telegram's limit are split on line
+ * boundaries before they are queued.
+ * <p>
+ * Failed sends are retried with exponential backoff, honouring {@code retry_after} on HTTP 429. A failed message is
+ * put back with the time it may be sent again instead of blocking the sender, so messages to other chats keep going
+ * out meanwhile; later messages to the same chat wait behind it to keep their order.
+ */
 @Service
 public class TelegramMessageSender {
     private static final Logger LOGGER = LoggerFactory.getLogger(TelegramMessageSender.class);
@@ -20,73 +51,344 @@ public class TelegramMessageSender {
     private static final String BOT_TOKEN_ENV_VAR = "TELEGRAM_BOT_TOKEN";
     private static final String CHAT_ID_ENV_VAR = "TELEGRAM_CHAT_ID";
 
+    // Telegram rejects longer texts
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String MERGE_SEPARATOR = "\n\n";
+
+    private final SharedHttpClient httpClient;
+    private final MonitorMetrics metrics;
+    private final String apiBaseUrl;
+    private final String botToken;
+    private final String chatId;
+    private final BlockingQueue<OutboundMessage> queue;
+    // messages waiting for a retry, earliest first; taken by the sender thread only
+    private final PriorityBlockingQueue<OutboundMessage> retries = new PriorityBlockingQueue<>(16,
+            Comparator.comparingLong(OutboundMessage::notBeforeNanos).thenComparingLong(OutboundMessage::sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    private final long mergeWindowNanos;
+    private final long perChatIntervalNanos;
+    private final long globalIntervalNanos;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final Thread senderThread;
+
+    private final Map<String, Long> nextSendPerChat = new HashMap<>();
+    // per chat, until when a failed message is waiting for its retry
+    private final Map<String, Long> retryingUntil = new HashMap<>();
+    private long nextSendGlobal;
+    private volatile boolean running = true;
+
+    /**
+     * @param sequence       order in which the messages were queued
+     * @param attempt        number of failed sends so far
+     * @param notBeforeNanos the message is not sent before this time, 0 for right away
+     */
+    private record OutboundMessage(String chatId, String text, long enqueuedNanos, long sequence, int attempt,
+                                   long notBeforeNanos) {
+
+        OutboundMessage notBefore(long nanos, int attempt) {
+            return new OutboundMessage(chatId, text, enqueuedNanos, sequence, attempt, nanos);
+        }
+    }
+
+    @Autowired
+    public TelegramMessageSender(SharedHttpClient httpClient,
+                                 MonitorMetrics metrics,
+                                 @Value("${telegram.api-base-url:https://api.telegram.org}") String apiBaseUrl,
+                                 @Value("${telegram.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${telegram.merge-window:2s}") Duration mergeWindow,
+                                 @Value("${telegram.per-chat-interval:1s}") Duration perChatInterval,
+                                 @Value("${telegram.global-rate:30}") int globalRatePerSecond,
+                                 @Value("${telegram.max-retries:5}") int maxRetries,
+                                 @Value("${telegram.retry-backoff:1s}") Duration retryBackoff) {
+        // read once, the environment does not change while we are running
+        this(httpClient, metrics, apiBaseUrl, getValidateEnv(BOT_TOKEN_ENV_VAR), getValidateEnv(CHAT_ID_ENV_VAR),
+                queueCapacity, mergeWindow, perChatInterval, globalRatePerSecond, maxRetries, retryBackoff);
+    }
+
+    TelegramMessageSender(SharedHttpClient httpClient, MonitorMetrics metrics, String apiBaseUrl, String botToken,
+                          String chatId, int queueCapacity, Duration mergeWindow, Duration perChatInterval,
+                          int globalRatePerSecond, int maxRetries, Duration retryBackoff) {
+        this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.apiBaseUrl = apiBaseUrl;
+        this.botToken = botToken;
+        this.chatId = chatId;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.mergeWindowNanos = mergeWindow.toNanos();
+        this.perChatIntervalNanos = perChatInterval.toNanos();
+        this.globalIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, globalRatePerSecond);
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        metrics.gauge("monitor.notification.queue.size", queue::size);
+        this.senderThread = new Thread(this::sendLoop, "telegram-sender");
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    public static TelegramMessageSender withDefaults(SharedHttpClient httpClient) {
+        return new TelegramMessageSender(httpClient, MonitorMetrics.noop(), "https://api.telegram.org", 1000,
+                Duration.ofSeconds(2), Duration.ofSeconds(1), 30, 5, Duration.ofSeconds(1));
+    }
+
     public static void main(String[] args) {
         // The message you want to send - you could also make this an argument
         String messageText = "Hello from Java running with environment variables!";
 
-        var telegramMessageSender = new TelegramMessageSender();
+        var telegramMessageSender = withDefaults(SharedHttpClient.withDefaults());
         telegramMessageSender.sendMessage(messageText);
+        telegramMessageSender.close();
     }
 
-    private static String getValidateEnv(String chatIdEnvVar) {
-        String chatId = System.getenv(chatIdEnvVar);
-        if (chatId == null || chatId.trim().isEmpty()) {
-            LOGGER.error("Error: Environment variable '" + chatIdEnvVar + "' is not set or is empty.");
-            System.exit(1); // Exit with an error code
+    private static String getValidateEnv(String envVar) {
+        String value = System.getenv(envVar);
+        if (value == null || value.trim().isEmpty()) {
+            LOGGER.error("Error: Environment variable '" + envVar + "' is not set or is empty, messages will be dropped.");
+            return null;
         }
-        return chatId;
+        return value.trim();
     }
 
+    /**
+     * Queues the message for the configured chat and returns immediately. A text longer than Telegram allows is queued
+     * as several messages.
+     */
     public void sendMessage(String messageText) {
-        String botToken = getValidateEnv(BOT_TOKEN_ENV_VAR);
-        String chatId = getValidateEnv(CHAT_ID_ENV_VAR);
+        sendMessage(chatId, messageText);
+    }
 
-        // --- Telegram Bot API Endpoint ---
-        String apiUrl = "https://api.telegram.org/bot" + botToken + "/sendMessage";
+    public void sendMessage(String targetChatId, String messageText) {
+        if (botToken == null || targetChatId == null) {
+            LOGGER.error("Telegram is not configured, dropping message: {}", messageText);
+            metrics.countNotification("dropped");
+            return;
+        }
+        long now = System.nanoTime();
+        for (String part : split(messageText)) {
+            if (!running || !queue.offer(new OutboundMessage(targetChatId, part, now, sequence.incrementAndGet(), 0, 0))) {
+                LOGGER.error("Telegram queue full or closed, dropping message: {}", part);
+                metrics.countNotification("dropped");
+            }
+        }
+    }
 
-        // --- Prepare the JSON payload ---
-        // Using String.format for simplicity, but a JSON library is better
-        // for complex messages or proper escaping.
-        String jsonBody = String.format("{\"chat_id\": \"%s\", \"text\": \"%s\"}", chatId, messageText);
-
-        // --- Use HttpClient to send the POST request ---
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Content-Type", "application/json") // Same header as curl
-                .POST(BodyPublishers.ofString(jsonBody))   // Send the JSON body as POST data
-                .build();
+    /**
+     * Splits the text into parts of at most {@value #MAX_MESSAGE_LENGTH} characters, at line breaks where possible.
+     * Only a single line longer than that is cut in between, though never inside a surrogate pair.
+     */
+    static List<String> split(String text) {
+        if (text.length() <= MAX_MESSAGE_LENGTH) {
+            return List.of(text);
+        }
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        int start = 0;
+        while (start < text.length()) {
+            int newline = text.indexOf('\n', start);
+            int end = newline < 0 ? text.length() : newline + 1;
+            if (part.length() + (end - start) > MAX_MESSAGE_LENGTH && !part.isEmpty()) {
+                addPart(parts, part);
+            }
+            while (end - start > MAX_MESSAGE_LENGTH) {
+                int cut = start + MAX_MESSAGE_LENGTH;
+                if (Character.isHighSurrogate(text.charAt(cut - 1))) {
+                    cut--;
+                }
+                parts.add(text.substring(start, cut));
+                start = cut;
+            }
+            part.append(text, start, end);
+            start = end;
+        }
+        addPart(parts, part);
+        return parts;
+    }
 
-        LOGGER.info("Sending message to chat ID: " + chatId + " (from env var " + CHAT_ID_ENV_VAR + ")");
-        LOGGER.info("Using bot token from env var " + BOT_TOKEN_ENV_VAR); // Avoid printing the token itself
-        LOGGER.info("API URL: " + apiUrl.substring(0, apiUrl.indexOf("/bot") + 5) + "..."); // Print part of URL without full token
-        LOGGER.info("JSON Body: " + jsonBody);
+    // the line break a part ends with is not sent
+    private static void addPart(List<String> parts, StringBuilder part) {
+        int length = part.length();
+        if (length > 0 && part.charAt(length - 1) == '\n') {
+            length--;
+        }
+        if (length > 0) {
+            parts.add(part.substring(0, length));
+        }
+        part.setLength(0);
+    }
 
-        try {
-            HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+    public int getQueueSize() {
+        return queue.size();
+    }
 
-            // --- Process the response ---
-            int statusCode = response.statusCode();
-            String responseBody = response.body();
+    public static String buildPayload(String chatId, String text) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("chat_id", chatId);
+        payload.addProperty("text", text);
+        return payload.toString();
+    }
 
-            LOGGER.info("HTTP Status Code: " + statusCode);
-            LOGGER.info("Response Body: " + responseBody);
+    private void sendLoop() {
+        while (running || !queue.isEmpty() || !retries.isEmpty()) {
+            try {
+                deliverDueRetries();
+                OutboundMessage first = queue.poll(untilNextRetry(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<OutboundMessage> batch = new ArrayList<>();
+                batch.add(first);
+                // collect whatever else arrives within the merge window of the first message
+                long deadline = first.enqueuedNanos() + mergeWindowNanos;
+                long wait;
+                while (running && (wait = deadline - System.nanoTime()) > 0) {
+                    OutboundMessage next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+                for (OutboundMessage message : merge(batch)) {
+                    deliver(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error("Unexpected error in Telegram sender.", e);
+            }
+        }
+    }
 
-            if (statusCode == 200) {
-                LOGGER.info("Message sent successfully!");
+    /**
+     * Joins the texts per chat into as few messages as Telegram's length limit allows. A merged message keeps the
+     * enqueue time of its oldest part, so the measured latency is the worst one.
+     */
+    private static List<OutboundMessage> merge(List<OutboundMessage> batch) {
+        Map<String, List<OutboundMessage>> merged = new LinkedHashMap<>();
+        for (OutboundMessage message : batch) {
+            List<OutboundMessage> messages = merged.computeIfAbsent(message.chatId(), key -> new ArrayList<>());
+            String text = message.text();
+            int last = messages.size() - 1;
+            OutboundMessage previous = last >= 0 ? messages.get(last) : null;
+            if (previous != null && previous.text().length() + MERGE_SEPARATOR.length() + text.length() <= MAX_MESSAGE_LENGTH) {
+                messages.set(last, new OutboundMessage(previous.chatId(), previous.text() + MERGE_SEPARATOR + text,
+                        previous.enqueuedNanos(), previous.sequence(), 0, 0));
             } else {
-                LOGGER.error("Failed to send message. Telegram API returned an error.");
-                // You might want to parse the responseBody to get the specific error message
+                messages.add(message);
             }
+        }
+        return merged.values().stream().flatMap(List::stream).toList();
+    }
+
+    private void deliverDueRetries() throws InterruptedException {
+        OutboundMessage due;
+        while ((due = retries.peek()) != null && due.notBeforeNanos() - System.nanoTime() <= 0) {
+            deliver(retries.poll());
+        }
+    }
+
+    private long untilNextRetry() {
+        OutboundMessage next = retries.peek();
+        long wait = next == null ? TimeUnit.SECONDS.toNanos(1) : next.notBeforeNanos() - System.nanoTime();
+        return Math.max(0, Math.min(wait, TimeUnit.SECONDS.toNanos(1)));
+    }
 
+    /**
+     * Sends the message once; on a failure worth retrying it is put back into {@link #retries}.
+     */
+    private void deliver(OutboundMessage message) throws InterruptedException {
+        String targetChatId = message.chatId();
+        int attempt = message.attempt();
+        Long waitingUntil = retryingUntil.get(targetChatId);
+        if (waitingUntil != null && waitingUntil - System.nanoTime() > 0) {
+            // an older message to this chat waits for its retry, this one goes after it
+            retries.add(message.notBefore(waitingUntil, attempt));
+            return;
+        }
+        awaitRateLimit(targetChatId);
+        long retryAfterMillis = retryBackoff.toMillis() << Math.min(attempt, 16);
+        try {
+            HttpResponse<String> response = post(targetChatId, message.text());
+            int statusCode = response.statusCode();
+            if (statusCode == 200) {
+                LOGGER.info("Message sent successfully!");
+                metrics.recordNotificationLatency(System.nanoTime() - message.enqueuedNanos());
+                metrics.countNotification("sent");
+                return;
+            }
+            LOGGER.error("Failed to send message. Telegram API returned {}: {}", statusCode, response.body());
+            if (statusCode == 429) {
+                retryAfterMillis = Math.max(retryAfterMillis, retryAfterSeconds(response.body()) * 1000L);
+            } else if (statusCode < 500) {
+                // bad request, wrong token or chat: retrying will not help
+                metrics.countNotification("failed");
+                return;
+            }
         } catch (IOException e) {
             LOGGER.error("Error sending HTTP request: " + e.getMessage());
-            e.printStackTrace();
+        }
+        if (attempt >= maxRetries) {
+            LOGGER.error("Giving up on Telegram message after {} attempts.", attempt + 1);
+            metrics.countNotification("failed");
+            return;
+        }
+        long notBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+        retryingUntil.put(targetChatId, notBefore);
+        retries.add(message.notBefore(notBefore, attempt + 1));
+    }
+
+    private void awaitRateLimit(String targetChatId) throws InterruptedException {
+        long now = System.nanoTime();
+        long notBefore = Math.max(nextSendGlobal, nextSendPerChat.getOrDefault(targetChatId, now));
+        if (notBefore > now) {
+            TimeUnit.NANOSECONDS.sleep(notBefore - now);
+            now = System.nanoTime();
+        }
+        nextSendGlobal = now + globalIntervalNanos;
+        nextSendPerChat.put(targetChatId, now + perChatIntervalNanos);
+    }
+
+    private static long retryAfterSeconds(String responseBody) {
+        try {
+            JsonObject parameters = JsonParser.parseString(responseBody).getAsJsonObject().getAsJsonObject("parameters");
+            return parameters == null ? 0 : parameters.get("retry_after").getAsLong();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private HttpResponse<String> post(String targetChatId, String messageText) throws IOException, InterruptedException {
+        // --- Telegram Bot API Endpoint ---
+        String apiUrl = apiBaseUrl + "/bot" + botToken + "/sendMessage";
+
+        // --- Prepare the JSON payload ---
+        String jsonBody = buildPayload(targetChatId, messageText);
+
+        // --- Use the shared HttpClient to send the POST request ---
+        HttpRequest request = httpClient.newRequest(URI.create(apiUrl))
+                .header("Content-Type", "application/json") // Same header as curl
+                .POST(BodyPublishers.ofString(jsonBody))   // Send the JSON body as POST data
+                .build();
+
+        LOGGER.info("Sending message to chat ID: " + targetChatId + " (from env var " + CHAT_ID_ENV_VAR + ")");
+        LOGGER.debug("JSON Body: " + jsonBody);
+
+        return httpClient.send(request, BodyHandlers.ofString());
+    }
+
+    /**
+     * Stops accepting messages and gives the sender thread some time to deliver what is still queued.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        try {
+            senderThread.join(Duration.ofSeconds(30));
         } catch (InterruptedException e) {
-            LOGGER.error("Request interrupted: " + e.getMessage());
-            e.printStackTrace();
-            // Restore interrupted state
             Thread.currentThread().interrupt();
         }
+        if (!queue.isEmpty() || !retries.isEmpty()) {
+            LOGGER.warn("{} Telegram messages were not delivered before shutdown.", queue.size() + retries.size());
+        }
     }
 }
@@ -0,0 +1,189 @@
+package de.tkunkel.monitor.scheduling;
+
+import de.tkunkel.monitor.monitors.Monitor;
+import de.tkunkel.monitor.monitors.MonitorExecutor;
+import de.tkunkel.monitor.monitors.MonitorOutcome;
+import de.tkunkel.monitor.monitors.MonitorResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every monitor on its own, adaptive interval instead of one fixed cron for all of them.
+ * <p>
+ * After a detected change the interval drops to the minimum; every run without a change multiplies it by
+ * {@code backoff-factor} up to the maximum. First runs are spread randomly over {@code startup-jitter} and every
+ * following due time gets up to {@code jitter} (a fraction of the interval) added, so monitors do not fire in lockstep.
+ * <p>
+ * Due times are kept in one {@link DelayQueue} (a binary heap). A single dispatcher thread waits for the head to
+ * become due, collects everything else that is due and hands the batch to the {@link MonitorExecutor}. A monitor is
+ * not in the queue while it runs, so it can never overlap with itself.
+ */
+@Component
+public class MonitorScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorScheduler.class);
+
+    private final MonitorExecutor monitorExecutor;
+    private final boolean enabled;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final double backoffFactor;
+    private final Duration startupJitter;
+    private final double jitter;
+    private final DelayQueue<Entry> dueQueue = new DelayQueue<>();
+    private Thread dispatcher;
+
+    static final class Entry implements Delayed {
+        final Monitor monitor;
+        final long minNanos;
+        final long maxNanos;
+        long intervalNanos;
+        long dueNanos;
+
+        Entry(Monitor monitor, long minNanos, long maxNanos) {
+            this.monitor = monitor;
+            this.minNanos = minNanos;
+            this.maxNanos = maxNanos;
+            this.intervalNanos = maxNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Entry) other).dueNanos);
+        }
+    }
+
+    public MonitorScheduler(MonitorExecutor monitorExecutor,
+                            @Value("${monitor.scheduler.adaptive:true}") boolean enabled,
+                            @Value("${monitor.scheduler.min-interval:1h}") Duration minInterval,
+                            @Value("${monitor.scheduler.max-interval:24h}") Duration maxInterval,
+                            @Value("${monitor.scheduler.backoff-factor:2.0}") double backoffFactor,
+                            @Value("${monitor.scheduler.startup-jitter:5m}") Duration startupJitter,
+                            @Value("${monitor.scheduler.jitter:0.1}") double jitter) {
+        if (minInterval.compareTo(maxInterval) > 0 || minInterval.isZero() || minInterval.isNegative()) {
+            throw new IllegalArgumentException("monitor.scheduler.min-interval must be positive and not above max-interval");
+        }
+        if (backoffFactor < 1.0) {
+            throw new IllegalArgumentException("monitor.scheduler.backoff-factor must be at least 1.0, was " + backoffFactor);
+        }
+        this.monitorExecutor = monitorExecutor;
+        this.enabled = enabled;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.backoffFactor = backoffFactor;
+        this.startupJitter = startupJitter;
+        this.jitter = jitter;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            LOGGER.info("Adaptive scheduling disabled, monitors run on the fixed cron.");
+            return;
+        }
+        long now = System.nanoTime();
+        for (Monitor monitor : monitorExecutor.getMonitors()) {
+            Entry entry = entryFor(monitor);
+            entry.dueNanos = now + randomUpTo(startupJitter.toNanos());
+            dueQueue.add(entry);
+        }
+        dispatcher = Thread.ofPlatform().name("monitor-scheduler").daemon().start(this::dispatchLoop);
+        LOGGER.info("Scheduled {} monitors (interval {} .. {}).", dueQueue.size(), minInterval, maxInterval);
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Entry> batch = new ArrayList<>();
+                batch.add(dueQueue.take());
+                dueQueue.drainTo(batch);
+                Thread.ofVirtual().name("monitor-batch").start(() -> runBatch(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts at the longest interval of the monitor; its own bounds override the configured ones.
+     */
+    Entry entryFor(Monitor monitor) {
+        Duration min = monitor.getMinInterval() != null ? monitor.getMinInterval() : minInterval;
+        Duration max = monitor.getMaxInterval() != null ? monitor.getMaxInterval() : maxInterval;
+        return new Entry(monitor, min.toNanos(), Math.max(min.toNanos(), max.toNanos()));
+    }
+
+    private void runBatch(List<Entry> batch) {
+        List<Monitor> monitors = batch.stream().map(entry -> entry.monitor).toList();
+        List<MonitorResult> results;
+        try {
+            results = monitorExecutor.execute(monitors);
+        } catch (RuntimeException e) {
+            LOGGER.error("Scheduled run of {} monitors failed.", batch.size(), e);
+            results = List.of();
+        }
+        // the executor answers in the order of the batch
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            MonitorResult result = i < results.size() ? results.get(i) : null;
+            if (result != null && !result.monitorName().equals(entry.monitor.getName())) {
+                LOGGER.error("Result of {} returned for {}, keeping its interval.", result.monitorName(), entry.monitor.getName());
+                result = null;
+            }
+            reschedule(entry, result == null ? null : result.outcome());
+        }
+    }
+
+    /**
+     * Interval after a run: the minimum after a change, {@code backoff-factor} times longer (up to the maximum)
+     * otherwise. Failed runs ({@code outcome} {@code null}) keep the interval.
+     */
+    long nextIntervalNanos(Entry entry, MonitorOutcome outcome) {
+        if (outcome == MonitorOutcome.CHANGED) {
+            return entry.minNanos;
+        }
+        if (outcome == null) {
+            return entry.intervalNanos;
+        }
+        return (long) Math.min(entry.maxNanos, entry.intervalNanos * backoffFactor);
+    }
+
+    private void reschedule(Entry entry, MonitorOutcome outcome) {
+        entry.intervalNanos = nextIntervalNanos(entry, outcome);
+        entry.dueNanos = System.nanoTime() + entry.intervalNanos + randomUpTo((long) (entry.intervalNanos * jitter));
+        dueQueue.add(entry);
+        LOGGER.debug("{} ({}) next run in {}.", entry.monitor.getName(), outcome, Duration.ofNanos(entry.intervalNanos));
+    }
+
+    private static long randomUpTo(long boundNanos) {
+        return boundNanos <= 0 ? 0 : ThreadLocalRandom.current().nextLong(boundNanos);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.tkunkel.monitor.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Decides which of {@code monitor.shard.count} instances runs a monitor, so N instances (and N egress IPs) can split
+ * the monitors between them without talking to each other.
+ * <p>
+ * The owner is found by rendezvous (highest random weight) hashing: every shard gets a weight from a hash of the
+ * monitor name and the shard index, the highest weight wins. The result only depends on the name and the shard count.
+ * Adding a shard moves only the monitors the new shard wins (about 1/N of them), removing one moves only the monitors
+ * it owned; all others stay where they are.
+ * <p>
+ * The instance index is either configured ({@code monitor.shard.index}) or, with {@code monitor.shard.lease-dir},
+ * claimed as the lowest free {@link ShardLease} in that shared directory. With a lease directory a configured index is
+ * checked against the lease as well, so two instances cannot run the same shard.
+ */
+@Component
+public class ShardAssignment {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardAssignment.class);
+
+    private final int count;
+    private final int index;
+    private final ShardLease lease;
+
+    public ShardAssignment(@Value("${monitor.shard.count:1}") int count,
+                           @Value("${monitor.shard.index:-1}") int index,
+                           @Value("${monitor.shard.lease-dir:}") String leaseDir) {
+        if (count < 1) {
+            throw new IllegalArgumentException("monitor.shard.count must be at least 1, was " + count);
+        }
+        if (index >= count) {
+            throw new IllegalArgumentException("monitor.shard.index must be below monitor.shard.count (" + count + "), was " + index);
+        }
+        this.count = count;
+        if (count == 1) {
+            this.index = 0;
+            this.lease = null;
+            return;
+        }
+        if (leaseDir == null || leaseDir.isBlank()) {
+            if (index < 0) {
+                throw new IllegalArgumentException("monitor.shard.index or monitor.shard.lease-dir is required with " + count + " shards");
+            }
+            this.index = index;
+            this.lease = null;
+        } else {
+            Path directory = Path.of(leaseDir.trim());
+            this.lease = index < 0 ? ShardLease.tryClaimAny(directory, count) : ShardLease.tryClaim(directory, index);
+            if (lease == null) {
+                throw new IllegalStateException(index < 0
+                        ? "All " + count + " shards in " + directory + " are held by other instances"
+                        : "Shard " + index + " is held by another instance: " + ShardLease.describeHolder(directory, index));
+            }
+            this.index = lease.getIndex();
+        }
+        LOGGER.info("Running shard {} of {}{}.", this.index, count, lease == null ? "" : " (lease " + lease.getFile() + ")");
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean owns(String monitorName) {
+        return ownerOf(monitorName) == index;
+    }
+
+    public int ownerOf(String monitorName) {
+        return owner(monitorName, count);
+    }
+
+    /**
+     * The shard in {@code [0, shardCount)} that owns the monitor.
+     */
+    public static int owner(String monitorName, int shardCount) {
+        long nameHash = fnv1a64(monitorName);
+        int owner = 0;
+        long highestWeight = Long.MIN_VALUE;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long weight = mix64(nameHash ^ (shard * 0x9E3779B97F4A7C15L));
+            if (weight > highestWeight) {
+                highestWeight = weight;
+                owner = shard;
+            }
+        }
+        return owner;
+    }
+
+    // stable across JVMs and versions, unlike anything based on identity hash codes
+    private static long fnv1a64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 finalizer, spreads the small differences between shard indexes over all bits
+    private static long mix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    @PreDestroy
+    public void release() {
+        if (lease != null) {
+            lease.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.tkunkel.monitor.sharding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Claim on one shard, held as an exclusive lock on {@code shard-<index>.lock} in a directory all instances share.
+ * <p>
+ * This stands in for a real coordination service: the operating system drops the lock when the process dies, so a
+ * crashed instance never blocks its shard, and a second instance configured with the same index is refused instead of
+ * running the same monitors twice. Locks on network file systems are only as reliable as the file system's locking.
+ */
+public final class ShardLease implements AutoCloseable {
+    private final int index;
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private ShardLease(int index, Path file, FileChannel channel, FileLock lock) {
+        this.index = index;
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * @return the lease, or {@code null} if another instance holds the shard
+     */
+    public static ShardLease tryClaim(Path directory, int index) {
+        Path file = directory.resolve("shard-" + index + ".lock");
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            // who holds the shard, for humans looking into the directory
+            String owner = ManagementFactory.getRuntimeMXBean().getName() + " since " + Instant.now() + "\n";
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(owner.getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(false);
+            return new ShardLease(index, file, channel, lock);
+        } catch (OverlappingFileLockException e) {
+            // held by this very JVM
+            closeQuietly(channel);
+            return null;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Could not claim shard lease " + file, e);
+        }
+    }
+
+    /**
+     * Claims the lowest shard index no other instance holds.
+     *
+     * @return the lease, or {@code null} if all {@code shardCount} shards are taken
+     */
+    public static ShardLease tryClaimAny(Path directory, int shardCount) {
+        for (int index = 0; index < shardCount; index++) {
+            ShardLease lease = tryClaim(directory, index);
+            if (lease != null) {
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The content of the lease file, i.e. the holder as far as it is known.
+     */
+    public static String describeHolder(Path directory, int index) {
+        try {
+            return Files.readString(directory.resolve("shard-" + index + ".lock"), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            // closing the channel below releases it as well
+        }
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to clean up
+        }
+    }
+}
@@ -3,22 +3,39 @@ package de.tkunkel.monitor.starter;
 import de.tkunkel.monitor.monitors.TelegramMessageSender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.ConfigurableApplicationContext; // Import this
 import de.tkunkel.monitor.monitors.MonitorExecutor;
+import de.tkunkel.monitor.scheduling.MonitorScheduler;
+import de.tkunkel.monitor.sharding.ShardAssignment;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
+// never lazy: the @Scheduled methods are only registered once this bean exists
+@Lazy(false)
 @EnableScheduling
 @SpringBootApplication(scanBasePackages = "de.tkunkel.monitor")
 public class Starter {
     private static final Logger LOGGER = LoggerFactory.getLogger(Starter.class);
-    private static ConfigurableApplicationContext applicationContext;
+    private static volatile ConfigurableApplicationContext applicationContext;
 
-    // This method will run every day at 5:50 AM
+    private final boolean livesignOnStartup;
+
+    public Starter(@Value("${monitor.livesign.on-startup:true}") boolean livesignOnStartup) {
+        this.livesignOnStartup = livesignOnStartup;
+    }
+
+    // This method will run every day at 5:50 AM, unless the adaptive per-monitor scheduling is active
     @Scheduled(cron = "0 50 5 * * *")
     public void runMonitors() {
+        if (applicationContext.getBean(MonitorScheduler.class).isEnabled()) {
+            return;
+        }
         MonitorExecutor monitorExecutor = applicationContext.getBean(MonitorExecutor.class);
         monitorExecutor.execute();
     }
@@ -29,6 +46,12 @@ public class Starter {
         MonitorExecutor monitorExecutor = applicationContext.getBean(MonitorExecutor.class);
         TelegramMessageSender telegramMessageSender = applicationContext.getBean(TelegramMessageSender.class);
         StringBuilder msg = new StringBuilder("⚒ LiveSign\n");
+        ShardAssignment shards = monitorExecutor.getShards();
+        if (shards.isSharded()) {
+            msg.append("Shard ").append(shards.getIndex()).append(" of ").append(shards.getCount())
+                    .append(", running ").append(monitorExecutor.getMonitors().size()).append(" of ")
+                    .append(monitorExecutor.getAllMonitorNames().size()).append(" monitors.\n");
+        }
         msg.append("Just as info, these Monitors are active:\n");
         monitorExecutor.getAllMonitorNames().forEach(monitor -> {
             msg.append("- ").append(monitor).append("\n");
@@ -37,15 +60,19 @@ public class Starter {
         telegramMessageSender.sendMessage(msg.toString());
     }
 
+    // Sent in the background, so building the notification beans does not delay the start
+    @EventListener(ApplicationReadyEvent.class)
+    public void sendStartupLivesign(ApplicationReadyEvent event) {
+        applicationContext = event.getApplicationContext();
+        if (livesignOnStartup) {
+            Thread.ofVirtual().name("startup-livesign").start(this::sendLivesign);
+        }
+    }
+
     public static void main(String[] args) {
         applicationContext = SpringApplication.run(Starter.class, args);
 
         LOGGER.info("Application Context started successfully!");
-
-        MonitorExecutor monitorExecutor = applicationContext.getBean(MonitorExecutor.class);
-        LOGGER.info("Successfully retrieved Starter bean from context: " + monitorExecutor.getClass().getName());
-
-        new Starter().sendLivesign();
     }
 
 
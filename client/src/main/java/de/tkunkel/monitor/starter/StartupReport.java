@@ -0,0 +1,66 @@
+package de.tkunkel.monitor.starter;
+
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Logs how long the start took and how much memory the process holds once it is ready, and keeps the resident set
+ * size available as gauge {@code monitor.process.rss}. The start times themselves are published by Spring Boot as
+ * {@code application.started.time} and {@code application.ready.time}.
+ */
+@Component
+public class StartupReport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+    // Linux only, other systems report -1
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    public StartupReport(MonitorMetrics metrics) {
+        metrics.gauge("monitor.process.rss", StartupReport::residentSetSizeBytes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(ApplicationReadyEvent event) {
+        List<String> jvmArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        boolean cds = jvmArguments.stream().anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile"));
+        Runtime runtime = Runtime.getRuntime();
+        LOGGER.info("Ready in {} ms, JVM up for {} ms (aot={}, cds={}, lazy={}); RSS {} MB, heap used {} MB of {} MB.",
+                event.getTimeTaken().toMillis(),
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                AotDetector.useGeneratedArtifacts(),
+                cds,
+                event.getApplicationContext().getEnvironment().getProperty("spring.main.lazy-initialization", Boolean.class, false),
+                toMegabytes(residentSetSizeBytes()),
+                toMegabytes(runtime.totalMemory() - runtime.freeMemory()),
+                toMegabytes(runtime.totalMemory()));
+    }
+
+    static long residentSetSizeBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                // "VmRSS:     123456 kB"
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Resident set size not available: {}", e.getMessage());
+        }
+        return -1;
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes < 0 ? -1 : bytes / (1024 * 1024);
+    }
+}
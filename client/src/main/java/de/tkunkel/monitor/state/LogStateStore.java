@@ -0,0 +1,281 @@
+package de.tkunkel.monitor.state;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe {@link StateStore} backed by an append-only log file.
+ * <p>
+ * Every record is {@code [payload length][CRC32C][payload]}, the payload being the operation, key and value.
+ * At startup the log is replayed into an in-memory index. A torn record at the end (a crash in the middle of an
+ * append) is cut off, so the store always comes back with the last committed state. A corrupt record with valid
+ * records after it is damage rather than a crash: it is skipped, replay resumes at the next valid record and the file
+ * is left as it is. Changes are buffered until {@link #commit()}, which appends them all and fsyncs once. When the log
+ * has grown to several times the live data it is compacted into a fresh file that atomically replaces the old one.
+ */
+@Component
+public class LogStateStore implements StateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStateStore.class);
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final Map<String, String> index = new ConcurrentHashMap<>();
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    public LogStateStore(@Value("${monitor.state.file:monitor-state.log}") String file) {
+        this.file = Path.of(file).toAbsolutePath();
+        try {
+            Path parent = this.file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            long validBytes = replay();
+            this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            if (channel.size() > validBytes) {
+                LOGGER.warn("Discarding {} bytes of incomplete state records at the end of {}.", channel.size() - validBytes, this.file);
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+            channel.position(validBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open state store " + this.file, e);
+        }
+        LOGGER.info("Loaded {} state entries from {}.", index.size(), this.file);
+    }
+
+    /**
+     * Replays the log into the index and returns the number of bytes up to the end of the last valid record.
+     */
+    private long replay() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        int validEnd = 0;
+        int position = 0;
+        while (position <= buffer.limit() - HEADER_BYTES) {
+            int length = recordLength(buffer, position, crc);
+            if (length < 0) {
+                // not a record here: damage in the middle of the log if a valid record follows, a torn tail otherwise
+                int next = nextRecord(buffer, position + 1, crc);
+                if (next < 0) {
+                    break;
+                }
+                LOGGER.error("Skipping {} bytes of corrupt state records at offset {} of {}.", next - position, position, file);
+                position = next;
+                continue;
+            }
+            apply(buffer.slice(position + HEADER_BYTES, length));
+            position += HEADER_BYTES + length;
+            validEnd = position;
+        }
+        return validEnd;
+    }
+
+    /**
+     * @return the payload length of the valid record at the position, -1 if there is none
+     */
+    private static int recordLength(ByteBuffer buffer, int position, CRC32C crc) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.limit() - position - HEADER_BYTES) {
+            return -1;
+        }
+        byte op = buffer.get(position + HEADER_BYTES);
+        if (op != OP_PUT && op != OP_REMOVE) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(buffer.array(), position + HEADER_BYTES, length);
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    private static int nextRecord(ByteBuffer buffer, int from, CRC32C crc) {
+        for (int position = from; position <= buffer.limit() - HEADER_BYTES; position++) {
+            if (recordLength(buffer, position, crc) >= 0) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte op = payload.get();
+        String key = readString(payload);
+        if (op == OP_PUT) {
+            index.put(key, readString(payload));
+        } else if (op == OP_REMOVE) {
+            index.remove(key);
+        }
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer encode(byte op, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + keyBytes.length + (valueBytes == null ? 0 : 4 + valueBytes.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length).putInt(0);
+        record.put(op).putInt(keyBytes.length).put(keyBytes);
+        if (valueBytes != null) {
+            record.putInt(valueBytes.length).put(valueBytes);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    @Override
+    public String get(String key) {
+        return index.get(key);
+    }
+
+    @Override
+    public void put(String key, String value) {
+        ByteBuffer record = encode(OP_PUT, key, value);
+        lock.lock();
+        try {
+            index.put(key, value);
+            pending.add(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        ByteBuffer record = encode(OP_REMOVE, key, null);
+        lock.lock();
+        try {
+            if (index.remove(key) != null) {
+                pending.add(record);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void commit() {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (ByteBuffer record : pending) {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(false);
+            LOGGER.debug("Committed {} state changes.", pending.size());
+            pending.clear();
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not commit state to " + file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long liveBytes = 0;
+        for (Map.Entry<String, String> entry : index.entrySet()) {
+            liveBytes += HEADER_BYTES + 9L + utf8Length(entry.getKey()) + utf8Length(entry.getValue());
+        }
+        long logBytes = channel.size();
+        if (logBytes < MIN_COMPACTION_BYTES || logBytes < 4 * liveBytes) {
+            return;
+        }
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, String> entry : index.entrySet()) {
+                ByteBuffer record = encode(OP_PUT, entry.getKey(), entry.getValue());
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename itself is only durable once the directory is
+        forceDirectory(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(channel.size());
+        LOGGER.info("Compacted state log {} from {} to {} bytes.", file, logBytes, channel.size());
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform (e.g. Windows), the move is still atomic there
+            LOGGER.debug("Could not sync directory {}.", directory, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        commit();
+        lock.lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close state store {}.", file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.tkunkel.monitor.state;
+
+/**
+ * Key/value store for everything the monitors remember between runs (last seen values, fingerprints,
+ * HTTP validators). Reads are served from memory; writes become durable with the next {@link #commit()}.
+ */
+public interface StateStore {
+
+    /**
+     * @return the stored value or {@code null} if the key is unknown
+     */
+    String get(String key);
+
+    void put(String key, String value);
+
+    void remove(String key);
+
+    /**
+     * Makes all changes since the last commit durable in one batch.
+     */
+    void commit();
+}
@@ -0,0 +1,153 @@
+package de.tkunkel.monitor.circuit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, NEVER);
+        assertThat(breaker.onFailure()).isFalse();
+        assertThat(breaker.onFailure()).isFalse();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        assertThat(breaker.onFailure()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        // further failures of calls already under way do not report the transition again
+        assertThat(breaker.onFailure()).isFalse();
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, NEVER);
+        breaker.onFailure();
+        breaker.onSuccess();
+        assertThat(breaker.getConsecutiveFailures()).isZero();
+        assertThat(breaker.onFailure()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenProbeClosesOnSuccess() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        breaker.onFailure();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        // only one probe at a time
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpenProbeReopensOnFailure() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 5, TimeUnit.MILLISECONDS.toNanos(50));
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.tryAcquire()).isFalse();
+        await(breaker);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // a failed probe opens it right away, without waiting for the threshold again
+        assertThat(breaker.onFailure()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void releaseHandsTheProbeBack() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        breaker.onFailure();
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.release();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        // releasing a closed breaker changes nothing
+        breaker.onSuccess();
+        breaker.release();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void exactlyOneConcurrentCallerBecomesTheProbe() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+                breaker.onFailure();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> acquired = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    acquired.add(executor.submit(() -> {
+                        start.await();
+                        return breaker.tryAcquire();
+                    }));
+                }
+                start.countDown();
+                int probes = 0;
+                for (Future<Boolean> future : acquired) {
+                    probes += future.get() ? 1 : 0;
+                }
+                assertThat(probes).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void disabledBreakersLetEverythingThrough() {
+        CircuitBreakers breakers = CircuitBreakers.disabled();
+        CircuitBreaker breaker = breakers.forMonitor("monitor");
+        breakers.recordFailure(breaker);
+        breakers.recordFailure(breaker);
+        assertThat(breakers.tryAcquire(breaker)).isTrue();
+    }
+
+    @Test
+    void breakersArePerTarget() {
+        CircuitBreakers breakers = new CircuitBreakers(true, 1, Duration.ofHours(1));
+        assertThat(breakers.forHost("Example.org")).isSameAs(breakers.forHost("example.org"));
+        assertThat(breakers.forMonitor("example.org")).isNotSameAs(breakers.forHost("example.org"));
+
+        breakers.recordFailure(breakers.forHost("example.org"));
+        assertThat(breakers.tryAcquire(breakers.forHost("example.org"))).isFalse();
+        assertThat(breakers.tryAcquire(breakers.forHost("other.org"))).isTrue();
+        assertThat(breakers.getBreakers()).hasSize(3);
+    }
+
+    @Test
+    void thresholdMustBePositive() {
+        assertThatThrownBy(() -> new CircuitBreakers(true, 0, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void await(CircuitBreaker breaker) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!breaker.tryAcquire()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
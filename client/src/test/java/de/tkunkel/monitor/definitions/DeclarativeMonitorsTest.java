@@ -0,0 +1,127 @@
+package de.tkunkel.monitor.definitions;
+
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.monitors.Minecraft;
+import de.tkunkel.monitor.monitors.Monitor;
+import de.tkunkel.monitor.state.StateStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeclarativeMonitorsTest {
+
+    @TempDir
+    Path directory;
+
+    @SuppressWarnings("unchecked")
+    private DeclarativeMonitors load(String yaml, Monitor... beans) throws IOException {
+        Path file = directory.resolve("monitors.yml");
+        Files.writeString(file, yaml);
+        ObjectProvider<Monitor> beanMonitors = mock(ObjectProvider.class);
+        when(beanMonitors.orderedStream()).thenAnswer(invocation -> Stream.of(beans));
+        return new DeclarativeMonitors(file.toString(), null, null, mock(StateStore.class), mock(ChangeHistory.class),
+                MonitorMetrics.noop(), beanMonitors);
+    }
+
+    @Test
+    void compilesDefinitions() throws IOException {
+        DeclarativeMonitors monitors = load("""
+                monitors:
+                  - name: Some Page
+                    url: https://example.org/
+                  - name: Other Page
+                    url: https://example.org/other
+                    stateKey: other.dat
+                """, new Minecraft(null, null));
+        assertThat(monitors.getMonitors()).extracting(Monitor::getConfigFileName)
+                .containsExactly("some-page.dat", "other.dat");
+    }
+
+    @Test
+    void duplicateStateKeyInTheFileFails() {
+        assertThatThrownBy(() -> load("""
+                monitors:
+                  - name: Some Page
+                    url: https://example.org/
+                  - name: Other Page
+                    url: https://example.org/other
+                    stateKey: some-page.dat
+                """))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("some-page.dat");
+    }
+
+    @Test
+    void stateKeyOfAMonitorBeanFails() {
+        assertThatThrownBy(() -> load("""
+                monitors:
+                  - name: Minecraft
+                    url: https://example.org/
+                """, new Minecraft(null, null)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("minecraft.dat")
+                .hasMessageContaining("Minecraft Current Bedrock Server");
+    }
+
+    @Test
+    void fingerprintKeysCollideToo() {
+        assertThatThrownBy(() -> load("""
+                monitors:
+                  - name: Fingerprint
+                    url: https://example.org/
+                    stateKey: minecraft.dat.fingerprint
+                """, new Minecraft(null, null)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("minecraft.dat.fingerprint");
+    }
+
+    @Test
+    void duplicateNameWithOwnStateKeysFails() {
+        assertThatThrownBy(() -> load("""
+                monitors:
+                  - name: Some Page
+                    url: https://example.org/
+                    stateKey: first.dat
+                  - name: some page
+                    url: https://example.org/other
+                    stateKey: second.dat
+                """))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'some page'")
+                .hasMessageContaining("'Some Page'");
+    }
+
+    @Test
+    void nameOfAMonitorBeanFails() {
+        assertThatThrownBy(() -> load("""
+                monitors:
+                  - name: Minecraft Current Bedrock Server
+                    url: https://example.org/
+                    stateKey: other.dat
+                """, new Minecraft(null, null)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Duplicate name");
+    }
+
+    @Test
+    void withoutDefinitionsFileThereAreNoMonitors() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<Monitor> beanMonitors = mock(ObjectProvider.class);
+        when(beanMonitors.orderedStream()).thenAnswer(invocation -> Stream.of(new Minecraft(null, null)));
+        DeclarativeMonitors monitors = new DeclarativeMonitors("", null, null, mock(StateStore.class),
+                mock(ChangeHistory.class), MonitorMetrics.noop(), beanMonitors);
+        assertThat(monitors.getMonitors()).isEqualTo(List.of());
+    }
+}
@@ -0,0 +1,35 @@
+package de.tkunkel.monitor.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemCodecTest {
+
+    @Test
+    void roundTrip() {
+        List<Item> items = List.of(new Item("bin-linux", "https://example.org/bin-linux/server-1.2.3.zip"),
+                new Item("quotes \"and\" \\ slashes", "line\nbreak and ünïcödé 😀"), new Item("", ""));
+        String stored = ItemCodec.encode(items);
+        assertThat(stored).startsWith("[");
+        assertThat(ItemCodec.decode(stored)).isEqualTo(items);
+        assertThat(ItemCodec.decode(ItemCodec.encode(List.of()))).isEmpty();
+    }
+
+    @Test
+    void storedFormIsKeyValueObjects() {
+        assertThat(ItemCodec.encode(List.of(new Item("k", "v")))).isEqualTo("[{\"key\":\"k\",\"value\":\"v\"}]");
+    }
+
+    @Test
+    void legacyOrBrokenStateDecodesToNull() {
+        assertThat(ItemCodec.decode(null)).isNull();
+        assertThat(ItemCodec.decode("")).isNull();
+        assertThat(ItemCodec.decode("https://example.org/bin-linux/server-1.2.3.zip\n")).isNull();
+        assertThat(ItemCodec.decode("[not json")).isNull();
+        assertThat(ItemCodec.decode("[null]")).isNull();
+        assertThat(ItemCodec.decode("[{\"key\":\"k\"}]")).isNull();
+    }
+}
@@ -0,0 +1,63 @@
+package de.tkunkel.monitor.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemDifferTest {
+
+    @Test
+    void sameItemsGiveAnEmptyDiff() {
+        List<Item> items = List.of(new Item("a", "1"), new Item("b", "2"));
+        ItemDiff diff = ItemDiffer.diff(items, List.of(new Item("b", "2"), new Item("a", "1")));
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(diff.size()).isZero();
+    }
+
+    @Test
+    void addedRemovedAndChangedInListOrder() {
+        List<Item> previous = List.of(new Item("linux", "1.0"), new Item("windows", "1.0"), new Item("mac", "1.0"),
+                new Item("bsd", "0.9"));
+        List<Item> current = List.of(new Item("preview", "2.0"), new Item("windows", "1.1"), new Item("linux", "1.1"),
+                new Item("arm", "1.0"), new Item("bsd", "0.9"));
+
+        ItemDiff diff = ItemDiffer.diff(previous, current);
+
+        assertThat(diff.added()).containsExactly(new Item("preview", "2.0"), new Item("arm", "1.0"));
+        assertThat(diff.removed()).containsExactly(new Item("mac", "1.0"));
+        assertThat(diff.changed()).containsExactly(new ItemDiff.Change("windows", "1.0", "1.1"),
+                new ItemDiff.Change("linux", "1.0", "1.1"));
+        assertThat(diff.size()).isEqualTo(5);
+    }
+
+    @Test
+    void firstItemOfADuplicateKeyCounts() {
+        List<Item> previous = List.of(new Item("a", "1"), new Item("a", "ignored"), new Item("gone", "x"),
+                new Item("gone", "y"));
+        List<Item> current = List.of(new Item("a", "1"), new Item("a", "2"));
+
+        ItemDiff diff = ItemDiffer.diff(previous, current);
+
+        assertThat(diff.changed()).isEmpty();
+        assertThat(diff.added()).isEmpty();
+        assertThat(diff.removed()).containsExactly(new Item("gone", "x"));
+    }
+
+    @Test
+    void emptyLists() {
+        List<Item> items = List.of(new Item("a", "1"));
+        assertThat(ItemDiffer.diff(List.of(), items).added()).isEqualTo(items);
+        assertThat(ItemDiffer.diff(items, List.of()).removed()).isEqualTo(items);
+        assertThat(ItemDiffer.diff(List.of(), List.of()).isEmpty()).isTrue();
+    }
+
+    @Test
+    void distinctByKeyKeepsTheFirstItem() {
+        List<Item> unique = List.of(new Item("a", "1"), new Item("b", "2"));
+        assertThat(ItemDiffer.distinctByKey(unique)).isSameAs(unique);
+        assertThat(ItemDiffer.distinctByKey(List.of(new Item("a", "1"), new Item("b", "2"), new Item("a", "3"))))
+                .containsExactly(new Item("a", "1"), new Item("b", "2"));
+    }
+}
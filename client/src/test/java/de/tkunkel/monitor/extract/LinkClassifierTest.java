@@ -0,0 +1,154 @@
+package de.tkunkel.monitor.extract;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LinkClassifierTest {
+
+    private static final String BASE = "https://www.minecraft.net/en-us/download/server/bedrock";
+
+    // the straightforward definition the automaton has to agree with
+    private static boolean naive(List<String> include, List<String> exclude, String value) {
+        String lower = lowerCase(value);
+        return include.stream().allMatch(term -> lower.contains(lowerCase(term)))
+                && exclude.stream().noneMatch(term -> lower.contains(lowerCase(term)));
+    }
+
+    private static String lowerCase(String value) {
+        StringBuilder lower = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            lower.append(c < 128 ? (char) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c) : Character.toLowerCase(c));
+        }
+        return lower.toString();
+    }
+
+    @Test
+    void allIncludesAndNoExcludes() {
+        LinkClassifier classifier = LinkClassifier.of(List.of("bedrock", "linux", ".zip"), List.of("preview"));
+        assertThat(classifier.test("https://example.org/bin-linux/bedrock-server-1.21.zip")).isTrue();
+        assertThat(classifier.test("https://example.org/BIN-LINUX/Bedrock-Server-1.21.ZIP")).isTrue();
+        assertThat(classifier.test("https://example.org/bin-linux-preview/bedrock-server-1.21.zip")).isFalse();
+        assertThat(classifier.test("https://example.org/bin-win/bedrock-server-1.21.zip")).isFalse();
+        assertThat(classifier.test("")).isFalse();
+    }
+
+    @Test
+    void overlappingTerms() {
+        // terms that end inside each other need the failure links
+        LinkClassifier classifier = LinkClassifier.of(List.of("abab", "bac"), List.of());
+        assertThat(classifier.test("ababac")).isTrue();
+        assertThat(classifier.test("abac abab")).isTrue();
+        assertThat(classifier.test("abacab")).isFalse();
+        assertThat(LinkClassifier.of(List.of("he", "she", "hers"), List.of()).test("ushers")).isTrue();
+    }
+
+    @Test
+    void emptyTerms() {
+        assertThat(LinkClassifier.of(List.of(), List.of()).test("anything")).isTrue();
+        assertThat(LinkClassifier.of(List.of("", "a"), List.of()).test("a")).isTrue();
+        assertThat(LinkClassifier.of(null, null).test("")).isTrue();
+        // an empty exclude term occurs in every value
+        assertThat(LinkClassifier.of(List.of("a"), List.of("")).test("a")).isFalse();
+    }
+
+    @Test
+    void nonAsciiTermsIgnoreCase() {
+        LinkClassifier classifier = LinkClassifier.of(List.of("ÜBER", "straße"), List.of("ß-alt"));
+        assertThat(classifier.test("https://example.org/über/STRAßE")).isTrue();
+        assertThat(classifier.test("https://example.org/Über/straße/ß-ALT")).isFalse();
+        assertThat(classifier.test("https://example.org/uber/strasse")).isFalse();
+    }
+
+    @Test
+    void tooManyIncludeTerms() {
+        List<String> terms = IntStream.range(0, 65).mapToObj(i -> "term" + i).toList();
+        assertThatThrownBy(() -> LinkClassifier.of(terms, List.of())).isInstanceOf(IllegalArgumentException.class);
+        assertThat(LinkClassifier.of(terms.subList(0, 64), List.of()).test(String.join("", terms))).isTrue();
+    }
+
+    @Test
+    void agreesWithTheNaiveDefinition() {
+        Random random = new Random(7);
+        String alphabet = "abcAB./-:Äö€z";
+        for (int round = 0; round < 2000; round++) {
+            List<String> include = randomTerms(random, alphabet, random.nextInt(4));
+            List<String> exclude = randomTerms(random, alphabet, random.nextInt(3));
+            LinkClassifier classifier = LinkClassifier.of(include, exclude);
+            for (int i = 0; i < 20; i++) {
+                String value = randomString(random, alphabet, random.nextInt(24));
+                assertThat(classifier.test(value))
+                        .as("include %s exclude %s value %s", include, exclude, value)
+                        .isEqualTo(naive(include.stream().filter(term -> !term.isEmpty()).toList(), exclude, value));
+            }
+        }
+    }
+
+    @Test
+    void urlAttributeAgreesWithAbsUrl() {
+        Document document = Jsoup.parse("""
+                <a href="/bin-linux/bedrock-server-1.21.zip">relative</a>
+                <a href="https://other.org/bin-linux/bedrock-server.zip">absolute</a>
+                <a href="bin-linux/server.zip">relative to the page, bedrock comes from the base</a>
+                <a href="//cdn.example.org/linux/BEDROCK.ZIP">protocol relative</a>
+                <a href="/bin-linux/bedrock-server%2Dpreview.zip">percent-encoded</a>
+                <a href="/bin-linux/bedrock-preview.zip">excluded</a>
+                <a href=" /bin-linux/bedrock-server.zip ">blanks</a>
+                <a href="https://xn--bcher-kva.example/linux/bedrock.zip">punycode</a>
+                <a href="?linux.zip">query only</a>
+                <a href="#linux.zip">fragment only</a>
+                <a>no href</a>
+                <a HREF="/bin-linux/bedrock.zip">upper-case attribute</a>
+                <a href="javascript:linux.zip">not resolvable</a>
+                """, BASE);
+        List<List<String>> filters = List.of(List.of("bedrock", "linux", ".zip"), List.of("linux", ".zip"),
+                List.of("/linux/"), List.of("bedrock/bin"), List.of("https://www.minecraft.net/bin-linux"),
+                List.of("zip#"), List.of("bücher"), List.of("?linux"));
+        for (List<String> include : filters) {
+            LinkClassifier classifier = LinkClassifier.of(include, List.of("preview"));
+            Predicate<Element> filter = classifier.forUrlAttribute("href", BASE);
+            for (Element link : document.select("a")) {
+                assertThat(filter.test(link))
+                        .as("include %s link %s", include, link)
+                        .isEqualTo(classifier.test(link.absUrl("href")));
+            }
+        }
+    }
+
+    @Test
+    void urlAttributeUsesTheBaseOfThePage() {
+        Document document = Jsoup.parse("<base href='https://cdn.example.org/bedrock/'><a href='linux.zip'>x</a>", BASE);
+        Element link = document.selectFirst("a");
+        LinkClassifier classifier = LinkClassifier.of(List.of("cdn.example", "linux.zip"), List.of());
+        assertThat(classifier.forUrlAttribute("href", BASE).test(link)).isTrue();
+        assertThat(LinkClassifier.of(List.of("minecraft"), List.of()).forUrlAttribute("href", BASE).test(link)).isFalse();
+    }
+
+    private static List<String> randomTerms(Random random, String alphabet, int count) {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            terms.add(randomString(random, alphabet, random.nextInt(4)));
+        }
+        return terms;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return random.nextBoolean() ? value.toString() : value.toString().toUpperCase(Locale.ROOT);
+    }
+}
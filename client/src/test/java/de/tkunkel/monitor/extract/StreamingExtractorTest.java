@@ -0,0 +1,50 @@
+package de.tkunkel.monitor.extract;
+
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingExtractorTest {
+
+    private static List<String> texts(String cssQuery, String html) throws IOException {
+        return new StreamingExtractor(cssQuery).extract(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, "https://example.org/", element -> true, Element::text, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void matchKeepsNestedChildren() throws IOException {
+        assertThat(texts("h2.v", "<div><h2 class=v><span>1.2.3</span></h2></div>")).containsExactly("1.2.3");
+        assertThat(texts("a[href]", "<p><a href=/d><span>Download</span> now</a></p>")).containsExactly("Download now");
+    }
+
+    @Test
+    void nestedMatchesSeeTheirOwnContent() throws IOException {
+        String html = "<ul><li class=x><b>outer</b><ul><li class=x><i>inner</i></li></ul></li></ul>";
+        assertThat(texts("li.x", html)).containsExactly("inner", "outer inner");
+    }
+
+    @Test
+    void filterAndLimitApply() throws IOException {
+        String html = "<a href=/1><em>one</em></a><a href=/2><em>two</em></a><a href=/3><em>three</em></a>";
+        List<String> hrefs = new StreamingExtractor("a[href]").extract(
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                "https://example.org/", element -> !element.attr("href").equals("/2"),
+                element -> element.absUrl("href") + " " + element.text(), 2);
+        assertThat(hrefs).containsExactly("https://example.org/1 one", "https://example.org/3 three");
+    }
+
+    @Test
+    void completedElementsOutsideMatchesAreRemoved() throws IOException {
+        String html = "<section><p>gone</p><div class=c><p>kept</p></div></section>";
+        List<String> documents = new StreamingExtractor("div.c").extract(
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                "https://example.org/", element -> true, element -> element.root().text(), 1);
+        assertThat(documents).containsExactly("kept");
+    }
+}
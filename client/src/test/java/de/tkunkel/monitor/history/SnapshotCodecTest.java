@@ -0,0 +1,97 @@
+package de.tkunkel.monitor.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCodecTest {
+
+    private static byte[] encode(List<String> values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            String previous = null;
+            for (int i = 0; i < values.size(); i++) {
+                SnapshotCodec.write(out, previous, new Snapshot(Instant.ofEpochMilli(1000L * i), values.get(i)));
+                previous = values.get(i);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static SnapshotCodec.Decoded decode(byte[] bytes) throws IOException {
+        return SnapshotCodec.readAll(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static List<String> roundTrip(List<String> values) throws IOException {
+        return decode(encode(values)).snapshots().stream().map(Snapshot::value).toList();
+    }
+
+    @Test
+    void deltasRoundTrip() throws IOException {
+        List<String> values = List.of("1.20.1 bedrock-server-1.20.1.zip", "1.20.2 bedrock-server-1.20.2.zip",
+                "1.20.2 bedrock-server-1.20.2.zip", "", "new", "a longer new value", "new");
+        assertThat(roundTrip(values)).isEqualTo(values);
+    }
+
+    @Test
+    void deltasOnlyStoreTheChangedMiddle() throws IOException {
+        String base = "x".repeat(1000);
+        byte[] full = encode(List.of(base + "1" + base));
+        byte[] withDelta = encode(List.of(base + "1" + base, base + "2" + base));
+        assertThat(withDelta.length - full.length).isEqualTo(8 + 4 + 4 + 4 + 1);
+    }
+
+    @Test
+    void surrogatePairsAreNotSplit() throws IOException {
+        // same high surrogate, different low surrogate: the common prefix ends inside the pair
+        String grinning = "😀";
+        String beaming = "😁";
+        // different high surrogate, same low surrogate: the common suffix starts inside the pair
+        String musical = "🎵";
+        String rocket = "🞵";
+        List<String> values = List.of("version " + grinning, "version " + beaming,
+                musical + " end", rocket + " end", "a" + grinning + "b", "a" + beaming + "b");
+        assertThat(roundTrip(values)).isEqualTo(values);
+    }
+
+    @Test
+    void randomEditsRoundTrip() throws IOException {
+        Random random = new Random(42);
+        int[] alphabet = "ab😀😁🈀é".codePoints().toArray();
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            // edits by code point, the values of real pages only contain complete pairs
+            int codePoints = value.codePointCount(0, value.length());
+            int position = value.offsetByCodePoints(0, random.nextInt(codePoints + 1));
+            value.insert(position, Character.toChars(alphabet[random.nextInt(alphabet.length)]));
+            if (random.nextInt(3) == 0) {
+                int start = value.offsetByCodePoints(0, random.nextInt(codePoints + 1));
+                value.delete(start, start + Character.charCount(value.codePointAt(start)));
+            }
+            values.add(value.toString());
+        }
+        assertThat(roundTrip(values)).isEqualTo(values);
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        byte[] bytes = encode(List.of("first", "second"));
+        byte[] torn = Arrays.copyOf(bytes, bytes.length - 2);
+        SnapshotCodec.Decoded decoded = decode(torn);
+        assertThat(decoded.snapshots()).extracting(Snapshot::value).containsExactly("first");
+        assertThat(decoded.lastValue()).isEqualTo("first");
+        assertThat(decoded.validBytes()).isEqualTo(8 + 4 + 4 + 4 + 5);
+    }
+}
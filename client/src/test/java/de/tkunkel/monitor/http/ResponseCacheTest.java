@@ -0,0 +1,239 @@
+package de.tkunkel.monitor.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private ResponseCache cache(long maxDiskBytes, long maxMemoryBytes) {
+        return new ResponseCache(true, directory.toString(), DataSize.ofBytes(maxDiskBytes),
+                DataSize.ofBytes(maxMemoryBytes), Duration.ZERO);
+    }
+
+    private ResponseCache cache() {
+        return cache(1024 * 1024, 64 * 1024);
+    }
+
+    private static FetchRequest request(String path) {
+        return new FetchRequest("test", URI.create("https://example.com/" + path), Map.of());
+    }
+
+    private static HttpHeaders headers(String... namesAndValues) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], List.of(namesAndValues[i + 1]));
+        }
+        return HttpHeaders.of(headers, (name, value) -> true);
+    }
+
+    private static void store(ResponseCache cache, FetchRequest request, HttpHeaders headers, byte[] body) {
+        cache.store(request, headers, HttpClient.Version.HTTP_1_1, StandardCharsets.UTF_8, SpooledBody.of(body));
+    }
+
+    private static void store(ResponseCache cache, FetchRequest request, HttpHeaders headers, String body) {
+        store(cache, request, headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(SpooledBody body) throws IOException {
+        try (InputStream in = body.open()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // does not compress, so the stored size is about the body size
+    private static byte[] noise(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void freshEntryIsServedWithinMaxAge() throws IOException {
+        ResponseCache cache = cache();
+        store(cache, request("page"), headers("Cache-Control", "public, max-age=60", "Age", "10"), "hello");
+
+        ResponseCache.CachedResponse entry = cache.lookup(request("page"));
+        long now = System.currentTimeMillis();
+        assertThat(entry.isFresh(now)).isTrue();
+        assertThat(entry.isFresh(entry.storedAtMillis() + 50_000)).isFalse();
+        assertThat(entry.size()).isEqualTo(5);
+        assertThat(read(cache.openBody(entry))).isEqualTo("hello");
+        assertThat(cache.lookup(request("other"))).isNull();
+
+        // kept across restarts
+        ResponseCache restarted = cache();
+        ResponseCache.CachedResponse loaded = restarted.lookup(request("page"));
+        assertThat(loaded.isFresh(now)).isTrue();
+        assertThat(read(restarted.openBody(loaded))).isEqualTo("hello");
+    }
+
+    @Test
+    void responsesThatCanNeverBeServedAreNotStored() {
+        ResponseCache cache = cache();
+        store(cache, request("no-store"), headers("Cache-Control", "no-store, max-age=60", "ETag", "\"a\""), "secret");
+        // without max-age (default 0) and without validators
+        store(cache, request("plain"), headers(), "plain");
+
+        assertThat(cache.lookup(request("no-store"))).isNull();
+        assertThat(cache.lookup(request("plain"))).isNull();
+        assertThat(cache.size()).isZero();
+
+        // no-store also drops what was stored before
+        store(cache, request("page"), headers("Cache-Control", "max-age=60"), "old");
+        store(cache, request("page"), headers("Cache-Control", "no-store"), "new");
+        assertThat(cache.lookup(request("page"))).isNull();
+        assertThat(cache.getDiskBytes()).isZero();
+    }
+
+    @Test
+    void staleEntryWithValidatorsIsKeptAndRefreshedByRevalidation() throws IOException {
+        ResponseCache cache = cache();
+        store(cache, request("page"), headers("Cache-Control", "no-cache", "ETag", "\"v1\""), "hello");
+        ResponseCache.CachedResponse stale = cache.lookup(request("page"));
+        assertThat(stale.isFresh(System.currentTimeMillis())).isFalse();
+        assertThat(stale.validators()).isEqualTo(new ValidatorCache.Validators("\"v1\"", null));
+
+        // no-cache stays, the max-age of the 304 applies
+        ResponseCache.CachedResponse refreshed = cache.refresh(stale, headers("Cache-Control", "max-age=60"));
+        assertThat(refreshed.noCache()).isTrue();
+        assertThat(refreshed.maxAgeMillis()).isEqualTo(60_000);
+        assertThat(cache.lookup(request("page"))).isSameAs(refreshed);
+        assertThat(read(cache.openBody(refreshed))).isEqualTo("hello");
+
+        store(cache, request("other"), headers("ETag", "\"o1\""), "other");
+        ResponseCache.CachedResponse other = cache.lookup(request("other"));
+        ResponseCache.CachedResponse fresh = cache.refresh(other, headers("Cache-Control", "max-age=60"));
+        assertThat(fresh.isFresh(System.currentTimeMillis())).isTrue();
+        // persisted
+        assertThat(cache().lookup(request("other")).maxAgeMillis()).isEqualTo(60_000);
+
+        // an entry that is no longer stored is not refreshed
+        assertThat(cache.refresh(other, headers("Cache-Control", "max-age=60"))).isNull();
+    }
+
+    @Test
+    void diskEvictsLeastRecentlyUsed() {
+        ResponseCache cache = cache(2_500, 0);
+        store(cache, request("a"), headers("Cache-Control", "max-age=60"), noise(1_000, 1));
+        store(cache, request("b"), headers("Cache-Control", "max-age=60"), noise(1_000, 2));
+        // a was used last
+        assertThat(cache.lookup(request("a"))).isNotNull();
+        store(cache, request("c"), headers("Cache-Control", "max-age=60"), noise(1_000, 3));
+
+        assertThat(cache.lookup(request("b"))).isNull();
+        assertThat(cache.lookup(request("a"))).isNotNull();
+        assertThat(cache.lookup(request("c"))).isNotNull();
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getDiskBytes()).isLessThanOrEqualTo(2_500);
+        assertThat(Files.exists(directory.resolve(ResponseCache.key(request("b")) + ".gz"))).isFalse();
+
+        // too big for the cache at all
+        store(cache, request("d"), headers("Cache-Control", "max-age=60"), noise(3_000, 4));
+        assertThat(cache.lookup(request("d"))).isNull();
+    }
+
+    @Test
+    void memoryEvictsLeastRecentlyUsed() throws IOException {
+        // eight bodies of about 1 KB fit, a single one may take an eighth
+        ResponseCache cache = cache(1024 * 1024, 8 * 1_100);
+        List<ResponseCache.CachedResponse> stored = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            store(cache, request("page" + i), headers("Cache-Control", "max-age=60"), noise(1_000, i));
+            stored.add(cache.lookup(request("page" + i)));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertThat(cache.openBody(stored.get(i))).isNotNull();
+        }
+        assertThat(cache.openBody(stored.get(0))).isNotNull();
+        assertThat(cache.openBody(stored.get(8))).isNotNull();
+        assertThat(cache.getMemoryBytes()).isLessThanOrEqualTo(8 * 1_100);
+
+        // without the files only the bodies still in memory can be served: page1 was used least recently
+        Files.delete(directory.resolve(stored.get(0).key() + ".gz"));
+        Files.delete(directory.resolve(stored.get(1).key() + ".gz"));
+        try (InputStream in = cache.openBody(stored.get(0)).open()) {
+            assertThat(in.readAllBytes()).isEqualTo(noise(1_000, 0));
+        }
+        assertThat(cache.openBody(stored.get(1))).isNull();
+        assertThat(cache.lookup(request("page1"))).isNull();
+    }
+
+    @Test
+    void replacedEntryDoesNotServeTheNewBody() throws IOException {
+        ResponseCache cache = cache();
+        store(cache, request("page"), headers("Cache-Control", "max-age=60"), "old");
+        ResponseCache.CachedResponse old = cache.lookup(request("page"));
+        assertThat(read(cache.openBody(old))).isEqualTo("old");
+
+        // another monitor on the same URL stores a new version while the old entry is about to be opened
+        store(cache, request("page"), headers("Cache-Control", "max-age=60"), "new body");
+        assertThat(cache.openBody(old)).isNull();
+
+        ResponseCache.CachedResponse current = cache.lookup(request("page"));
+        assertThat(current.size()).isEqualTo(8);
+        assertThat(read(cache.openBody(current))).isEqualTo("new body");
+        // and again from memory
+        assertThat(read(cache.openBody(current))).isEqualTo("new body");
+    }
+
+    @Test
+    void concurrentStoresAndOpensServeMatchingBodies() throws Exception {
+        ResponseCache cache = cache();
+        FetchRequest request = request("shared");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int writer = 0; writer < 2; writer++) {
+                int length = 10 + writer;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        store(cache, request, headers("Cache-Control", "max-age=60"), "x".repeat(length + (i % 3) * 2));
+                    }
+                }));
+            }
+            for (int reader = 0; reader < 2; reader++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        ResponseCache.CachedResponse entry = cache.lookup(request);
+                        SpooledBody body = entry == null ? null : cache.openBody(entry);
+                        if (body != null) {
+                            // the body belongs to the entry it was opened for
+                            assertThat(read(body)).hasSize((int) entry.size());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
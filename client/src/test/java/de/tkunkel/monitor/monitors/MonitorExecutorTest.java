@@ -0,0 +1,80 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.circuit.CircuitBreakers;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.sharding.ShardAssignment;
+import de.tkunkel.monitor.state.StateStore;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MonitorExecutorTest {
+
+    /**
+     * Monitor that takes a while and then returns a fixed outcome or fails.
+     */
+    private static Monitor monitor(String name, long sleepMillis, MonitorOutcome outcome) {
+        return new Monitor() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getConfigFileName() {
+                return name + ".dat";
+            }
+
+            @Override
+            public MonitorOutcome execute() {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (outcome == null) {
+                    throw new IllegalStateException(name + " failed");
+                }
+                return outcome;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void resultsLineUpWithTheGivenMonitors(boolean parallel) {
+        // the first ones finish last
+        Monitor slow = monitor("slow", 300, MonitorOutcome.CHANGED);
+        Monitor failing = monitor("failing", 150, null);
+        Monitor medium = monitor("medium", 100, MonitorOutcome.NOT_MODIFIED);
+        Monitor fast = monitor("fast", 0, MonitorOutcome.UNCHANGED);
+        ObjectProvider<MonitorProvider> providers = mock(ObjectProvider.class);
+        when(providers.orderedStream()).thenReturn(Stream.empty());
+        MonitorPipeline pipeline = new MonitorPipeline(MonitorMetrics.noop(), 4, 2, 2, 2, 16);
+        ObjectProvider<MonitorPipeline> pipelineProvider = mock(ObjectProvider.class);
+        when(pipelineProvider.getObject()).thenReturn(pipeline);
+        MonitorExecutor executor = new MonitorExecutor(List.of(fast, medium, failing, slow), providers,
+                mock(StateStore.class), CircuitBreakers.disabled(), MonitorMetrics.noop(), new ShardAssignment(1, -1, ""),
+                pipelineProvider, parallel, Duration.ofSeconds(10));
+        try {
+            // a batch of the scheduler, in another order than the monitors were registered in
+            List<MonitorResult> results = executor.execute(List.of(slow, failing, medium, fast));
+
+            assertThat(results).extracting(MonitorResult::monitorName).containsExactly("slow", "failing", "medium", "fast");
+            assertThat(results).extracting(MonitorResult::outcome)
+                    .containsExactly(MonitorOutcome.CHANGED, null, MonitorOutcome.NOT_MODIFIED, MonitorOutcome.UNCHANGED);
+            assertThat(results.get(1).status()).isEqualTo(MonitorResult.Status.FAILED);
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+}
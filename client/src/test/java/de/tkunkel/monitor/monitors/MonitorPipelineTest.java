@@ -0,0 +1,234 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.http.FetchRequest;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.FetchTimings;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.http.SpooledBody;
+import de.tkunkel.monitor.http.ValidatorCache;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import de.tkunkel.monitor.state.StateStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MonitorPipelineTest {
+
+    private static final ValidatorCache.Validators VALIDATORS = new ValidatorCache.Validators("\"v1\"", null);
+    private static final Duration LONG = Duration.ofSeconds(30);
+
+    private final Map<String, String> state = new ConcurrentHashMap<>();
+    private final StateStore stateStore = new StateStore() {
+        @Override
+        public String get(String key) {
+            return state.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            state.put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            state.remove(key);
+        }
+
+        @Override
+        public void commit() {
+        }
+    };
+    private PageFetcher pageFetcher;
+    private TelegramMessageSender telegram;
+    private MonitorPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pageFetcher = mock(PageFetcher.class);
+        telegram = mock(TelegramMessageSender.class);
+        when(pageFetcher.fetch(any(), any())).thenAnswer(invocation -> new FetchResult(200, HttpClient.Version.HTTP_1_1,
+                StandardCharsets.UTF_8, SpooledBody.empty(), "fingerprint", new FetchTimings(0, 0, 0), false, VALIDATORS));
+        // one worker per stage, so a blocked run holds up the ones behind it
+        pipeline = new MonitorPipeline(MonitorMetrics.noop(), 4, 1, 1, 1, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    /**
+     * Page monitor whose extraction and diff can be held up.
+     */
+    private class TestPage extends PageMonitor {
+        private final String name;
+        private final List<Item> items;
+        private final CountDownLatch extractRelease;
+        private final CountDownLatch diffRelease;
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        TestPage(String name, List<Item> items, CountDownLatch extractRelease, CountDownLatch diffRelease) {
+            super(telegram, MonitorPipelineTest.this.pageFetcher);
+            this.name = name;
+            this.items = items;
+            this.extractRelease = extractRelease;
+            this.diffRelease = diffRelease;
+            setStateStore(stateStore);
+            setChangeHistory(mock(ChangeHistory.class));
+            setMetrics(MonitorMetrics.noop());
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getConfigFileName() {
+            return name + ".dat";
+        }
+
+        @Override
+        public FetchRequest createFetchRequest() {
+            return new FetchRequest(getConfigFileName(), URI.create("https://example.org/" + name), Map.of());
+        }
+
+        @Override
+        public List<Item> extractItems(FetchResult result) {
+            entered.countDown();
+            if (extractRelease != null) {
+                awaitQuietly(extractRelease);
+            }
+            return items;
+        }
+
+        @Override
+        public void diffStage(Run run) {
+            if (diffRelease != null) {
+                entered.countDown();
+                awaitQuietly(diffRelease);
+            }
+            super.diffStage(run);
+        }
+    }
+
+    private TestPage page(String name) {
+        return new TestPage(name, List.of(new Item("k", name)), null, null);
+    }
+
+    private static FetchRequest requestOf(TestPage page) {
+        return argThat(request -> request != null && request.cacheKey().equals(page.getConfigFileName()));
+    }
+
+    @Test
+    void runStoresStateAndValidatorsAfterTheDiff() throws Exception {
+        TestPage page = page("a");
+        MonitorPipeline.Submission submission = pipeline.submit(page, LONG);
+        // a new monitor notifies about its first items
+        assertThat(submission.future().get(10, TimeUnit.SECONDS)).isEqualTo(MonitorOutcome.CHANGED);
+        assertThat(state).containsEntry("a.dat.fingerprint", "fingerprint").containsKey("a.dat");
+        verify(pageFetcher).storeValidators(requestOf(page), eq(VALIDATORS));
+        assertThat(submission.duration()).isPositive();
+    }
+
+    @Test
+    void failedExtractionStoresNothing() {
+        TestPage page = new TestPage("empty", List.of(), null, null);
+        MonitorPipeline.Submission submission = pipeline.submit(page, LONG);
+        assertThatThrownBy(() -> submission.future().get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(state).isEmpty();
+        verify(pageFetcher, never()).storeValidators(any(), any());
+    }
+
+    @Test
+    void runTimedOutWhileQueuedIsDroppedWithoutStoringAnything() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TestPage blocking = new TestPage("blocking", List.of(new Item("k", "v")), release, null);
+        MonitorPipeline.Submission first = pipeline.submit(blocking, LONG);
+        assertThat(blocking.entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // waits for the only extract worker and times out in the queue
+        TestPage queued = page("queued");
+        MonitorPipeline.Submission second = pipeline.submit(queued, Duration.ofMillis(100));
+        assertThatThrownBy(() -> second.future().get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+
+        release.countDown();
+        assertThat(first.future().get(10, TimeUnit.SECONDS)).isEqualTo(MonitorOutcome.CHANGED);
+        // the dropped run must not leave validators behind, or the next run would get a 304 for a page never diffed
+        assertThat(state).doesNotContainKeys("queued.dat", "queued.dat.fingerprint");
+        verify(pageFetcher, never()).storeValidators(requestOf(queued), any());
+        verify(pageFetcher).storeValidators(requestOf(blocking), eq(VALIDATORS));
+    }
+
+    @Test
+    void runTimedOutAfterItsStateWasStoredIsStillNotified() throws Exception {
+        state.put("late.dat", "[{\"key\":\"k\",\"value\":\"old\"}]");
+        CountDownLatch release = new CountDownLatch(1);
+        TestPage late = new TestPage("late", List.of(new Item("k", "new")), null, release);
+        MonitorPipeline.Submission submission = pipeline.submit(late, Duration.ofMillis(100));
+        assertThat(late.entered.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> submission.future().get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+
+        release.countDown();
+        verify(telegram, timeout(10_000)).sendMessage(anyString());
+        assertThat(state).containsEntry("late.dat", "[{\"key\":\"k\",\"value\":\"new\"}]");
+        verify(pageFetcher, timeout(10_000)).storeValidators(requestOf(late), eq(VALIDATORS));
+    }
+
+    @Test
+    void otherMonitorsRunInTheFetchStage() throws Exception {
+        Monitor plain = new Monitor() {
+            @Override
+            public String getName() {
+                return "plain";
+            }
+
+            @Override
+            public String getConfigFileName() {
+                return "plain.dat";
+            }
+
+            @Override
+            public MonitorOutcome execute() {
+                return MonitorOutcome.CHANGED;
+            }
+        };
+        assertThat(pipeline.submit(plain, LONG).future().get(10, TimeUnit.SECONDS)).isEqualTo(MonitorOutcome.CHANGED);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
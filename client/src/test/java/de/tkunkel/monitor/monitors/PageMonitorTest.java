@@ -0,0 +1,131 @@
+package de.tkunkel.monitor.monitors;
+
+import de.tkunkel.monitor.diff.Item;
+import de.tkunkel.monitor.diff.ItemCodec;
+import de.tkunkel.monitor.history.ChangeHistory;
+import de.tkunkel.monitor.http.FetchRequest;
+import de.tkunkel.monitor.http.FetchResult;
+import de.tkunkel.monitor.http.FetchTimings;
+import de.tkunkel.monitor.http.PageFetcher;
+import de.tkunkel.monitor.http.SpooledBody;
+import de.tkunkel.monitor.state.StateStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PageMonitorTest {
+
+    private static final String OLD_URL = "https://example.org/server-1.20.1.zip";
+    private static final String NEW_URL = "https://example.org/server-1.20.2.zip";
+
+    private final Map<String, String> state = new HashMap<>();
+    private final StateStore stateStore = new StateStore() {
+        @Override
+        public String get(String key) {
+            return state.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            state.put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            state.remove(key);
+        }
+
+        @Override
+        public void commit() {
+        }
+    };
+    private final TelegramMessageSender telegram = mock(TelegramMessageSender.class);
+    private final PageFetcher pageFetcher = mock(PageFetcher.class);
+    private List<Item> items;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // a new fingerprint on every run, so every run gets to the diff
+        when(pageFetcher.fetch(any(), any())).thenAnswer(invocation -> new FetchResult(200, HttpClient.Version.HTTP_1_1,
+                StandardCharsets.UTF_8, SpooledBody.empty(), "fingerprint-" + System.nanoTime(),
+                new FetchTimings(0, 0, 0), false, null));
+    }
+
+    private PageMonitor monitor() {
+        PageMonitor monitor = new PageMonitor(telegram, pageFetcher) {
+            @Override
+            public String getName() {
+                return "Server";
+            }
+
+            @Override
+            public String getConfigFileName() {
+                return "page-monitor-test.dat";
+            }
+
+            @Override
+            public FetchRequest createFetchRequest() {
+                return new FetchRequest(getConfigFileName(), URI.create("https://example.org/download"), Map.of());
+            }
+
+            @Override
+            public List<Item> extractItems(FetchResult result) {
+                return items;
+            }
+        };
+        monitor.setStateStore(stateStore);
+        monitor.setChangeHistory(mock(ChangeHistory.class));
+        return monitor;
+    }
+
+    private static Item item(String url) {
+        return new Item(url.substring(url.lastIndexOf('/') + 1), url);
+    }
+
+    @Test
+    void releaseAcrossTheUpgradeFromPlainTextStateIsNotified() {
+        state.put("page-monitor-test.dat", OLD_URL + "\n");
+        items = List.of(item(NEW_URL), item(OLD_URL));
+
+        assertThat(monitor().execute()).isEqualTo(MonitorOutcome.CHANGED);
+        verify(telegram).sendMessage("⚒ Server Change detected!\nOld: '" + OLD_URL + "',\n New: '" + NEW_URL + "'");
+        assertThat(ItemCodec.decode(state.get("page-monitor-test.dat"))).isEqualTo(items);
+    }
+
+    @Test
+    void plainTextStateMatchingTheFirstItemSwitchesSilently() {
+        state.put("page-monitor-test.dat", OLD_URL.toUpperCase());
+        items = List.of(item(OLD_URL));
+
+        assertThat(monitor().execute()).isEqualTo(MonitorOutcome.UNCHANGED);
+        verify(telegram, never()).sendMessage(any());
+        assertThat(ItemCodec.decode(state.get("page-monitor-test.dat"))).isEqualTo(items);
+
+        // from now on items are diffed
+        items = List.of(item(NEW_URL), item(OLD_URL));
+        assertThat(monitor().execute()).isEqualTo(MonitorOutcome.CHANGED);
+        verify(telegram).sendMessage("⚒ Server Change detected!\n+ server-1.20.2.zip: " + NEW_URL);
+    }
+
+    @Test
+    void newMonitorNotifiesAboutItsFirstItems() {
+        items = List.of(item(OLD_URL));
+
+        assertThat(monitor().execute()).isEqualTo(MonitorOutcome.CHANGED);
+        verify(telegram).sendMessage("⚒ Server Change detected!\nOld: '',\n New: '" + OLD_URL + "'");
+        assertThat(monitor().execute()).isEqualTo(MonitorOutcome.UNCHANGED);
+    }
+}
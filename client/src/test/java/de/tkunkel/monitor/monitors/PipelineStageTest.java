@@ -0,0 +1,86 @@
+package de.tkunkel.monitor.monitors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineStageTest {
+
+    @Test
+    void fullQueueBlocksTheSubmitter() throws InterruptedException {
+        PipelineStage stage = new PipelineStage("test", 1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        stage.submit(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        // the worker is busy, this one fills the queue
+        stage.submit(() -> {
+        });
+        assertThat(stage.getQueueSize()).isEqualTo(1);
+        assertThat(stage.getActiveCount()).isEqualTo(1);
+
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread submitter = Thread.ofPlatform().start(() -> {
+            stage.submit(() -> {
+            });
+            submitted.set(true);
+        });
+        submitter.join(200);
+        assertThat(submitted).isFalse();
+
+        release.countDown();
+        submitter.join(5000);
+        assertThat(submitted).isTrue();
+        stage.shutdown();
+    }
+
+    @Test
+    void interruptedSubmitterIsRejected() throws InterruptedException {
+        PipelineStage stage = new PipelineStage("test", 1, 1, true);
+        CountDownLatch release = new CountDownLatch(1);
+        stage.submit(() -> await(release));
+        stage.submit(() -> {
+        });
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> stage.submit(() -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            Thread.interrupted();
+            release.countDown();
+            stage.shutdown();
+        }
+    }
+
+    @Test
+    void shutDownStageRejects() {
+        PipelineStage stage = new PipelineStage("test", 2, 4, false);
+        assertThat(stage.getWorkers()).isEqualTo(2);
+        stage.shutdown();
+        assertThatThrownBy(() -> stage.submit(() -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void needsWorkersAndQueue() {
+        assertThatThrownBy(() -> new PipelineStage("test", 0, 1, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PipelineStage("test", 1, 0, false)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package de.tkunkel.monitor.monitors;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.tkunkel.monitor.http.SharedHttpClient;
+import de.tkunkel.monitor.metrics.MonitorMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelegramMessageSenderTest {
+
+    private static final String TOO_MANY_REQUESTS =
+            "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":1}}";
+
+    /**
+     * A sendMessage call the stub received.
+     */
+    private record Received(String chatId, String text, long nanos) {
+    }
+
+    /**
+     * Status and body the stub answers with.
+     */
+    private record Answer(int status, String body) {
+    }
+
+    private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+    // answered in order, 200 once empty
+    private final Queue<Answer> answers = new ConcurrentLinkedQueue<>();
+    private HttpServer server;
+    private SharedHttpClient httpClient;
+    private TelegramMessageSender sender;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/bottoken/sendMessage", this::handle);
+        server.start();
+        httpClient = SharedHttpClient.withDefaults();
+    }
+
+    @AfterEach
+    void stopStub() {
+        if (sender != null) {
+            sender.close();
+        }
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonObject payload = JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(),
+                StandardCharsets.UTF_8)).getAsJsonObject();
+        received.add(new Received(payload.get("chat_id").getAsString(), payload.get("text").getAsString(), System.nanoTime()));
+        Answer answer = answers.poll();
+        byte[] body = (answer == null ? "{\"ok\":true}" : answer.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(answer == null ? 200 : answer.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private TelegramMessageSender sender(Duration mergeWindow) {
+        String apiBaseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        sender = new TelegramMessageSender(httpClient, MonitorMetrics.noop(), apiBaseUrl, "token", "chat", 100,
+                mergeWindow, Duration.ofMillis(10), 1000, 3, Duration.ofMillis(10));
+        return sender;
+    }
+
+    private Received next() throws InterruptedException {
+        Received next = received.poll(10, TimeUnit.SECONDS);
+        assertThat(next).as("message sent to the stub").isNotNull();
+        return next;
+    }
+
+    @Test
+    void messagesWithinTheMergeWindowAreSentAsOne() throws InterruptedException {
+        TelegramMessageSender sender = sender(Duration.ofMillis(300));
+        sender.sendMessage("first");
+        sender.sendMessage("second");
+        sender.sendMessage("other", "elsewhere");
+
+        List<Received> sent = List.of(next(), next());
+        assertThat(sent).extracting(Received::chatId).containsExactly("chat", "other");
+        assertThat(sent.getFirst().text()).isEqualTo("first\n\nsecond");
+        assertThat(received.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void rateLimitedMessageIsRetriedAfterRetryAfter() throws InterruptedException {
+        answers.add(new Answer(429, TOO_MANY_REQUESTS));
+        TelegramMessageSender sender = sender(Duration.ZERO);
+        sender.sendMessage("hello");
+
+        Received rejected = next();
+        Received retried = next();
+        assertThat(retried.text()).isEqualTo(rejected.text()).isEqualTo("hello");
+        // retry_after wins over the much shorter backoff
+        assertThat(retried.nanos() - rejected.nanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(950));
+        assertThat(received.poll(300, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void laterMessageWaitsBehindTheRetryOfItsChatOnly() throws InterruptedException {
+        answers.add(new Answer(429, TOO_MANY_REQUESTS));
+        TelegramMessageSender sender = sender(Duration.ZERO);
+        sender.sendMessage("first");
+        assertThat(next().text()).isEqualTo("first");
+
+        // queued while "first" waits for its retry
+        sender.sendMessage("second");
+        sender.sendMessage("other", "elsewhere");
+        List<Received> sent = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sent.add(next());
+        }
+        // the other chat is not held up, this chat keeps its order
+        assertThat(sent).extracting(Received::text).containsExactly("elsewhere", "first", "second");
+    }
+
+    @Test
+    void shortTextIsNotSplit() {
+        String text = "line 1\nline 2";
+        assertThat(TelegramMessageSender.split(text)).containsExactly(text);
+        assertThat(TelegramMessageSender.split("x".repeat(4096))).hasSize(1);
+    }
+
+    @Test
+    void longTextIsSplitOnLineBoundaries() {
+        String line = "y".repeat(999);
+        String text = String.join("\n", line, line, line, line, line, line, line, line, line, line);
+        List<String> parts = TelegramMessageSender.split(text);
+        // four lines with their line breaks fit, a fifth does not
+        assertThat(parts).containsExactly(
+                String.join("\n", line, line, line, line),
+                String.join("\n", line, line, line, line),
+                String.join("\n", line, line));
+    }
+
+    @Test
+    void overlongLineIsCutOutsideSurrogatePairs() {
+        String text = "a".repeat(4095) + "😀" + "b".repeat(10) + "\nend";
+        List<String> parts = TelegramMessageSender.split(text);
+        assertThat(parts).allSatisfy(part -> assertThat(part.length()).isLessThanOrEqualTo(4096));
+        assertThat(parts.get(0)).isEqualTo("a".repeat(4095));
+        assertThat(String.join("", parts)).isEqualTo(text);
+        assertThat(parts).hasSize(2);
+    }
+}
@@ -0,0 +1,99 @@
+package de.tkunkel.monitor.scheduling;
+
+import de.tkunkel.monitor.monitors.Monitor;
+import de.tkunkel.monitor.monitors.MonitorExecutor;
+import de.tkunkel.monitor.monitors.MonitorOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class MonitorSchedulerTest {
+
+    private static final long HOUR = Duration.ofHours(1).toNanos();
+
+    private final MonitorScheduler scheduler = new MonitorScheduler(mock(MonitorExecutor.class), true,
+            Duration.ofHours(1), Duration.ofHours(24), 2.0, Duration.ZERO, 0.1);
+
+    private static Monitor monitor(Duration minInterval, Duration maxInterval) {
+        return new Monitor() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public String getConfigFileName() {
+                return "test.dat";
+            }
+
+            @Override
+            public MonitorOutcome execute() {
+                return MonitorOutcome.UNCHANGED;
+            }
+
+            @Override
+            public Duration getMinInterval() {
+                return minInterval;
+            }
+
+            @Override
+            public Duration getMaxInterval() {
+                return maxInterval;
+            }
+        };
+    }
+
+    @Test
+    void quietRunsBackOffUpToTheMaximum() {
+        MonitorScheduler.Entry entry = scheduler.entryFor(monitor(null, null));
+        assertThat(entry.intervalNanos).isEqualTo(24 * HOUR);
+
+        entry.intervalNanos = HOUR;
+        entry.intervalNanos = scheduler.nextIntervalNanos(entry, MonitorOutcome.UNCHANGED);
+        assertThat(entry.intervalNanos).isEqualTo(2 * HOUR);
+        entry.intervalNanos = scheduler.nextIntervalNanos(entry, MonitorOutcome.NOT_MODIFIED);
+        assertThat(entry.intervalNanos).isEqualTo(4 * HOUR);
+        entry.intervalNanos = 20 * HOUR;
+        assertThat(scheduler.nextIntervalNanos(entry, MonitorOutcome.UNCHANGED)).isEqualTo(24 * HOUR);
+    }
+
+    @Test
+    void changeResetsToTheMinimum() {
+        MonitorScheduler.Entry entry = scheduler.entryFor(monitor(null, null));
+        assertThat(scheduler.nextIntervalNanos(entry, MonitorOutcome.CHANGED)).isEqualTo(HOUR);
+    }
+
+    @Test
+    void failureKeepsTheInterval() {
+        MonitorScheduler.Entry entry = scheduler.entryFor(monitor(null, null));
+        entry.intervalNanos = 3 * HOUR;
+        assertThat(scheduler.nextIntervalNanos(entry, null)).isEqualTo(3 * HOUR);
+    }
+
+    @Test
+    void monitorBoundsOverrideTheConfiguredOnes() {
+        MonitorScheduler.Entry entry = scheduler.entryFor(monitor(Duration.ofMinutes(5), Duration.ofMinutes(30)));
+        assertThat(entry.intervalNanos).isEqualTo(Duration.ofMinutes(30).toNanos());
+        assertThat(scheduler.nextIntervalNanos(entry, MonitorOutcome.UNCHANGED)).isEqualTo(Duration.ofMinutes(30).toNanos());
+        assertThat(scheduler.nextIntervalNanos(entry, MonitorOutcome.CHANGED)).isEqualTo(Duration.ofMinutes(5).toNanos());
+
+        // only one bound set, the other one is the configured one; a maximum below the minimum is raised to it
+        MonitorScheduler.Entry minOnly = scheduler.entryFor(monitor(Duration.ofHours(2), null));
+        assertThat(scheduler.nextIntervalNanos(minOnly, MonitorOutcome.CHANGED)).isEqualTo(2 * HOUR);
+        assertThat(minOnly.intervalNanos).isEqualTo(24 * HOUR);
+        MonitorScheduler.Entry maxBelowMin = scheduler.entryFor(monitor(null, Duration.ofMinutes(10)));
+        assertThat(maxBelowMin.intervalNanos).isEqualTo(HOUR);
+    }
+
+    @Test
+    void invalidConfigurationIsRejected() {
+        assertThatThrownBy(() -> new MonitorScheduler(mock(MonitorExecutor.class), true, Duration.ofHours(2),
+                Duration.ofHours(1), 2.0, Duration.ZERO, 0.1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MonitorScheduler(mock(MonitorExecutor.class), true, Duration.ofHours(1),
+                Duration.ofHours(2), 0.5, Duration.ZERO, 0.1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,117 @@
+package de.tkunkel.monitor.sharding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardAssignmentTest {
+
+    private static final List<String> NAMES = IntStream.range(0, 10_000).mapToObj(i -> "monitor-" + i).toList();
+
+    @TempDir
+    Path leaseDir;
+
+    @Test
+    void ownerOnlyDependsOnNameAndCount() {
+        // pinned: instances of different versions must agree on the owners
+        assertThat(NAMES.subList(0, 10)).map(name -> ShardAssignment.owner(name, 7))
+                .containsExactly(6, 2, 2, 4, 3, 2, 2, 1, 2, 6);
+        assertThat(ShardAssignment.owner("anything", 1)).isZero();
+        for (String name : NAMES.subList(0, 100)) {
+            assertThat(ShardAssignment.owner(name, 5)).isEqualTo(ShardAssignment.owner(new String(name), 5));
+        }
+    }
+
+    @Test
+    void addingAShardOnlyMovesMonitorsToIt() {
+        for (int count = 1; count < 8; count++) {
+            int moved = 0;
+            for (String name : NAMES) {
+                int before = ShardAssignment.owner(name, count);
+                int after = ShardAssignment.owner(name, count + 1);
+                if (before != after) {
+                    assertThat(after).isEqualTo(count);
+                    moved++;
+                }
+            }
+            // about 1/(count + 1) of them
+            double expected = NAMES.size() / (count + 1.0);
+            assertThat((double) moved).isBetween(expected * 0.85, expected * 1.15);
+        }
+    }
+
+    @Test
+    void removingTheLastShardOnlyMovesItsMonitors() {
+        int count = 5;
+        for (String name : NAMES) {
+            int owner = ShardAssignment.owner(name, count);
+            if (owner != count - 1) {
+                assertThat(ShardAssignment.owner(name, count - 1)).isEqualTo(owner);
+            }
+        }
+    }
+
+    @Test
+    void monitorsAreSpreadEvenly() {
+        int count = 6;
+        int[] perShard = new int[count];
+        NAMES.forEach(name -> perShard[ShardAssignment.owner(name, count)]++);
+        double expected = NAMES.size() / (double) count;
+        for (int owned : perShard) {
+            assertThat((double) owned).isBetween(expected * 0.9, expected * 1.1);
+        }
+    }
+
+    @Test
+    void singleShardOwnsEverything() {
+        ShardAssignment shards = new ShardAssignment(1, -1, "");
+        assertThat(shards.isSharded()).isFalse();
+        assertThat(shards.getIndex()).isZero();
+        assertThat(NAMES.subList(0, 100)).allMatch(shards::owns);
+    }
+
+    @Test
+    void configuredIndexOwnsItsShare() {
+        List<String> owned = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            ShardAssignment shards = new ShardAssignment(3, index, "");
+            NAMES.stream().filter(shards::owns).forEach(owned::add);
+        }
+        // every monitor is run by exactly one of the instances
+        assertThat(owned).hasSize(NAMES.size()).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void invalidConfigurationFails() {
+        assertThatThrownBy(() -> new ShardAssignment(0, -1, "")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ShardAssignment(2, 2, "")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ShardAssignment(2, -1, "")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void leasesHandOutEveryShardOnce() {
+        ShardAssignment first = new ShardAssignment(2, -1, leaseDir.toString());
+        ShardAssignment second = new ShardAssignment(2, -1, leaseDir.toString());
+        try {
+            assertThat(List.of(first.getIndex(), second.getIndex())).containsExactlyInAnyOrder(0, 1);
+            assertThatThrownBy(() -> new ShardAssignment(2, -1, leaseDir.toString()))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> new ShardAssignment(2, first.getIndex(), leaseDir.toString()))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            first.release();
+            second.release();
+        }
+        // a released shard can be claimed again
+        ShardAssignment again = new ShardAssignment(2, 1, leaseDir.toString());
+        assertThat(again.getIndex()).isEqualTo(1);
+        again.release();
+    }
+}
@@ -0,0 +1,118 @@
+package de.tkunkel.monitor.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogStateStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private LogStateStore open() {
+        return new LogStateStore(directory.resolve("state.log").toString());
+    }
+
+    @Test
+    void committedStateSurvivesReopen() {
+        LogStateStore store = open();
+        store.put("a", "1");
+        store.put("b", "2");
+        store.commit();
+        store.put("a", "3");
+        store.remove("b");
+        store.close();
+
+        LogStateStore reopened = open();
+        assertThat(reopened.get("a")).isEqualTo("3");
+        assertThat(reopened.get("b")).isNull();
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsCutOff() throws IOException {
+        LogStateStore store = open();
+        store.put("a", "1");
+        store.put("b", "2");
+        store.close();
+        Path file = directory.resolve("state.log");
+        long committed = Files.size(file);
+
+        // half a record, as left by a crash in the middle of an append
+        store = open();
+        store.put("c", "a value that does not make it");
+        store.close();
+        byte[] log = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(log, (int) committed + 11));
+
+        LogStateStore reopened = open();
+        assertThat(reopened.get("a")).isEqualTo("1");
+        assertThat(reopened.get("b")).isEqualTo("2");
+        assertThat(reopened.get("c")).isNull();
+        assertThat(Files.size(file)).isEqualTo(committed);
+
+        reopened.put("d", "4");
+        reopened.close();
+        LogStateStore again = open();
+        assertThat(again.get("a")).isEqualTo("1");
+        assertThat(again.get("d")).isEqualTo("4");
+        again.close();
+    }
+
+    @Test
+    void corruptRecordInTheMiddleIsSkipped() throws IOException {
+        LogStateStore store = open();
+        store.put("a", "1");
+        store.commit();
+        Path file = directory.resolve("state.log");
+        long firstRecord = Files.size(file);
+        store.put("b", "2");
+        store.put("c", "3");
+        store.close();
+
+        byte[] log = Files.readAllBytes(file);
+        // flip a byte in the value of the second record
+        log[log.length - (int) firstRecord - 1] ^= 0x55;
+        Files.write(file, log, StandardOpenOption.TRUNCATE_EXISTING);
+
+        LogStateStore reopened = open();
+        assertThat(reopened.get("a")).isEqualTo("1");
+        assertThat(reopened.get("b")).isNull();
+        assertThat(reopened.get("c")).isEqualTo("3");
+        // damage is not truncated away together with the valid records after it
+        assertThat(Files.size(file)).isEqualTo(log.length);
+        reopened.close();
+    }
+
+    @Test
+    void compactionCountsEncodedBytes() throws IOException {
+        // 3 bytes per character in UTF-8: the live data is as large as the log, no reason to compact
+        String value = "€".repeat(400_000);
+        LogStateStore store = open();
+        store.put("a", value);
+        store.commit();
+        store.put("a", value + "€");
+        store.commit();
+        Path file = directory.resolve("state.log");
+        assertThat(Files.size(file)).isGreaterThan(2_400_000);
+
+        for (int i = 0; i < 2; i++) {
+            store.put("a", value);
+            store.commit();
+        }
+        // four times the live data, now it is compacted
+        assertThat(Files.size(file)).isLessThan(1_300_000);
+        store.close();
+
+        LogStateStore reopened = open();
+        assertThat(reopened.get("a")).isEqualTo(value);
+        reopened.close();
+    }
+}
@@ -0,0 +1,372 @@
+package de.tkunkel.work;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk index of the files of one folder, so a repeated run reads only the files that changed since the last one.
+ * <p>
+ * Every file is indexed by its absolute path, modification time and size with what the last run found out about it:
+ * binary or text. The checked content of small text files is kept as well, appended to one pack file that is mapped
+ * into memory on the next run; an unchanged file is then written from the pack without opening, sniffing or decoding
+ * it again. Larger text files are not copied, for them the index only saves the check.
+ * <p>
+ * The index of a folder lives in a folder of its own below the index folder, named by a hash of the folder's path:
+ * {@code index.bin} (entries) and the pack it refers to. Entries of files not seen in a run are dropped when the index
+ * is saved, and the pack is compacted once more than half of it is stale. A second run on the same folder at the same
+ * time runs without index.
+ * <p>
+ * Like git's index this one has to deal with "racily clean" files: a file changed in the same tick of the file system
+ * clock as it was read keeps its modification time (and maybe its size), so the change would go unnoticed. Entries of
+ * files modified less than {@value #RACY_MARGIN_SECONDS} seconds before the run that indexed them started are therefore
+ * not trusted; the next run reads them again and then indexes them with its own, later start.
+ * <p>
+ * The pack holds copies of the files, secrets included, so the index folder and its files are only accessible by the
+ * owner (on file systems with POSIX permissions).
+ * <p>
+ * {@link #lookup} may be called from any thread, all other methods from the writing thread only.
+ */
+public class ContentIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x636f7033; // "cop3"
+    private static final String INDEX_FILE = "index.bin";
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+    // coarser than the modification time resolution of any common file system (FAT: 2 seconds)
+    private static final int RACY_MARGIN_SECONDS = 2;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> OWNER_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> OWNER_FOLDER = PosixFilePermissions.fromString("rwx------");
+
+    public enum Kind {
+        /**
+         * Text, the content is in the pack.
+         */
+        TEXT,
+        /**
+         * Text, too large for the pack.
+         */
+        LARGE_TEXT,
+        BINARY
+    }
+
+    public record Entry(long modified, long size, Kind kind, long offset, int length) {
+    }
+
+    private final Path directory;
+    // holds the lock of the index while it is open
+    private final FileChannel lockChannel;
+    // entries of the last run, only read after the index is opened
+    private final Map<String, Entry> previous;
+    // entries modified from here on (in the time unit of Entry#modified) were racily clean in the last run
+    private final long racyFrom;
+    // start of this run, files are only read after it
+    private final long started;
+    private final MappedByteBuffer previousPack;
+    // entries of this run
+    private final Map<String, Entry> current = new HashMap<>();
+    private final Path packFile;
+    private final FileChannel pack;
+    private int reused;
+
+    /**
+     * @param started the start of the run that wrote the index
+     */
+    private record Loaded(String pack, long started, Map<String, Entry> entries) {
+    }
+
+    private ContentIndex(Path directory, FileChannel lockChannel, Map<String, Entry> previous, long previousStart,
+                         MappedByteBuffer previousPack, Path packFile, FileChannel pack, long started) {
+        this.directory = directory;
+        this.lockChannel = lockChannel;
+        this.previous = previous;
+        this.racyFrom = previousStart - TimeUnit.SECONDS.toNanos(RACY_MARGIN_SECONDS);
+        this.started = started;
+        this.previousPack = previousPack;
+        this.packFile = packFile;
+        this.pack = pack;
+    }
+
+    /**
+     * An index that never has an entry and stores nothing.
+     */
+    public static ContentIndex disabled() {
+        return new ContentIndex(null, null, Map.of(), 0, null, null, null, 0);
+    }
+
+    /**
+     * Opens the index of the folder below {@code indexRoot}; falls back to {@link #disabled()} when that is not
+     * possible.
+     */
+    public static ContentIndex open(Path indexRoot, Path folder) {
+        long started = now();
+        Path directory = indexRoot.resolve(hash(folder.toAbsolutePath().normalize().toString()));
+        FileChannel lockChannel = null;
+        try {
+            Files.createDirectories(directory, ownerOnly(OWNER_FOLDER));
+            restrict(directory, OWNER_FOLDER);
+            lockChannel = FileChannel.open(directory.resolve("lock"), Set.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                    ownerOnly(OWNER_FILE));
+            if (lockChannel.tryLock() == null) {
+                System.err.println("Index " + directory + " is in use by another run, running without index.");
+                lockChannel.close();
+                return disabled();
+            }
+            Loaded loaded = readEntries(directory);
+            Path packFile = directory.resolve(loaded.pack() != null ? loaded.pack() : newPackName());
+            FileChannel pack = FileChannel.open(packFile,
+                    Set.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), ownerOnly(OWNER_FILE));
+            restrict(packFile, OWNER_FILE);
+            long packSize = pack.size();
+            Map<String, Entry> previous = new HashMap<>();
+            loaded.entries().forEach((path, entry) -> {
+                // the pack may be shorter than the index if the system crashed before it was written to disk
+                if (entry.kind() != Kind.TEXT || entry.offset() + entry.length() <= packSize) {
+                    previous.put(path, entry);
+                }
+            });
+            if (previous.isEmpty() || packSize > Integer.MAX_VALUE) {
+                // nothing in the pack is referenced
+                previous.clear();
+                pack.truncate(0);
+            }
+            deleteOtherPacks(directory, packFile);
+            MappedByteBuffer previousPack = pack.map(FileChannel.MapMode.READ_ONLY, 0, pack.size());
+            pack.position(pack.size());
+            return new ContentIndex(directory, lockChannel, previous, loaded.started(), previousPack, packFile, pack, started);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error opening index " + directory + ", running without index: " + e.getMessage());
+            closeQuietly(lockChannel);
+            return disabled();
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * The entry of the last run, if the file has not changed since and was not racily clean back then.
+     */
+    public Entry lookup(Path file, long modified, long size) {
+        Entry entry = previous.get(file.toString());
+        if (entry == null || entry.modified() != modified || entry.size() != size || modified >= racyFrom) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * The content of a {@link Kind#TEXT} entry returned by {@link #lookup}, read-only.
+     */
+    public ByteBuffer content(Entry entry) {
+        return previousPack.slice((int) entry.offset(), entry.length());
+    }
+
+    /**
+     * Keeps an entry of the last run, the file has not changed.
+     */
+    public void keep(Path file, Entry entry) {
+        if (isEnabled()) {
+            current.put(file.toString(), entry);
+            reused++;
+        }
+    }
+
+    public void putText(Path file, long modified, long size, ByteBuffer content) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        long offset = pack.position();
+        int length = content.remaining();
+        while (content.hasRemaining()) {
+            pack.write(content);
+        }
+        current.put(file.toString(), new Entry(modified, size, Kind.TEXT, offset, length));
+    }
+
+    public void put(Path file, long modified, long size, Kind kind) {
+        if (isEnabled()) {
+            current.put(file.toString(), new Entry(modified, size, kind, 0, 0));
+        }
+    }
+
+    /**
+     * Number of files that were taken from the index in this run.
+     */
+    public int getReused() {
+        return reused;
+    }
+
+    /**
+     * Saves the entries of this run and releases the index.
+     */
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            long live = current.values().stream().mapToLong(Entry::length).sum();
+            pack.force(false);
+            if (pack.size() > Math.max(COMPACT_MIN_BYTES, 2 * live)) {
+                // the old pack stays until the index refers to the new one, it is deleted by the next run
+                Path compacted = directory.resolve(newPackName());
+                writeEntries(compact(compacted), compacted);
+            } else {
+                writeEntries(current, packFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving index " + directory + ": " + e.getMessage());
+        } finally {
+            closeQuietly(pack);
+            closeQuietly(lockChannel);
+        }
+    }
+
+    // copies the referenced content into a new pack
+    private Map<String, Entry> compact(Path compacted) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        try (FileChannel target = FileChannel.open(compacted,
+                Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                ownerOnly(OWNER_FILE))) {
+            for (Map.Entry<String, Entry> item : current.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.kind() == Kind.TEXT) {
+                    long offset = target.position();
+                    long copied = 0;
+                    while (copied < entry.length()) {
+                        copied += pack.transferTo(entry.offset() + copied, entry.length() - copied, target);
+                    }
+                    entry = new Entry(entry.modified(), entry.size(), entry.kind(), offset, entry.length());
+                }
+                entries.put(item.getKey(), entry);
+            }
+            target.force(false);
+        }
+        return entries;
+    }
+
+    private void writeEntries(Map<String, Entry> entries, Path packFile) throws IOException {
+        Path file = directory.resolve(INDEX_FILE);
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        Files.deleteIfExists(temporary);
+        Files.createFile(temporary, ownerOnly(OWNER_FILE));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(packFile.getFileName().toString());
+            out.writeLong(started);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                Entry entry = item.getValue();
+                byte[] path = item.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(path.length);
+                out.write(path);
+                out.writeLong(entry.modified());
+                out.writeLong(entry.size());
+                out.writeByte(entry.kind().ordinal());
+                out.writeLong(entry.offset());
+                out.writeInt(entry.length());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Loaded readEntries(Path directory) {
+        Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return new Loaded(null, 0, Map.of());
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return new Loaded(null, 0, Map.of());
+            }
+            String pack = in.readUTF();
+            long started = in.readLong();
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String path = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+                entries.put(path, new Entry(in.readLong(), in.readLong(), Kind.values()[in.readByte()], in.readLong(), in.readInt()));
+            }
+            return new Loaded(pack, started, entries);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading index " + file + ", starting a new one: " + e.getMessage());
+            return new Loaded(null, 0, Map.of());
+        }
+    }
+
+    // in the unit and epoch of the modification times the entries are stored with
+    private static long now() {
+        Instant now = Instant.now();
+        return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    private static FileAttribute<?>[] ownerOnly(Set<PosixFilePermission> permissions) {
+        return POSIX ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(permissions)} : new FileAttribute<?>[0];
+    }
+
+    // for files and folders created by older versions, the attributes only apply to new ones
+    private static void restrict(Path path, Set<PosixFilePermission> permissions) throws IOException {
+        if (POSIX) {
+            Files.setPosixFilePermissions(path, permissions);
+        }
+    }
+
+    private static String newPackName() {
+        return "content-" + System.currentTimeMillis() + ".pack";
+    }
+
+    private static void deleteOtherPacks(Path directory, Path packFile) throws IOException {
+        try (DirectoryStream<Path> packs = Files.newDirectoryStream(directory, "*.pack")) {
+            for (Path other : packs) {
+                if (!other.equals(packFile)) {
+                    Files.deleteIfExists(other);
+                }
+            }
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // nothing left to do
+        }
+    }
+}
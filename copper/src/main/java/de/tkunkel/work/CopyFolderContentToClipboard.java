@@ -1,28 +1,73 @@
 package de.tkunkel.work;
 
-import java.awt.GraphicsEnvironment; // Still useful for initial check, though native bypasses it
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
-// ... other imports ...
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.stream.Stream;
-import java.nio.file.StandardOpenOption; // Added for Files.readString options
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Copies the content of all files below a folder to the clipboard (or with {@code --out <file>} into a file).
+ * <p>
+ * The files are listed and read in parallel ({@code --threads}, default: one per core) and written in a fixed order
+ * (depth first, sorted by name). The content is streamed into the clipboard tool or the file while it is read; only
+ * a bounded read-ahead buffer ({@code --buffer-mb}, default 32) is held in memory, whatever the size of the tree.
+ * <p>
+ * Left out are: files and folders matched by {@link IgnoreRules#DEFAULT_PATTERNS} (unless {@code --no-default-ignores}),
+ * by {@code --ignore <pattern>} or by the {@code .gitignore} files in the tree (unless {@code --no-gitignore}); files
+ * larger than {@code --max-file-kb} (default 1024); binary files. Unchanged files are taken from the
+ * {@link ContentIndex} in {@code --index-dir} (default {@code ~/.cache/copper}), {@code --no-index} turns it off. The
+ * index keeps copies of the files, it is only readable by the owner.
+ */
 public class CopyFolderContentToClipboard {
 
+    private static final String USAGE = "Usage: java CopyFolderContentToClipboard [--out <file>] [--threads <n>] [--buffer-mb <mb>]"
+            + " [--ignore <pattern>]... [--no-default-ignores] [--no-gitignore] [--max-file-kb <kb>]"
+            + " [--index-dir <dir> | --no-index] <folder_path>";
+
     public static void main(String[] args) {
         // --- 1. Handle command-line arguments ---
-        if (args.length != 1) {
-            System.err.println("Usage: java CopyFolderContentToClipboard <folder_path>");
+        Path startFolderPath = null;
+        Path outFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long bufferBytes = 32L * 1024 * 1024;
+        List<String> ignorePatterns = new ArrayList<>(IgnoreRules.DEFAULT_PATTERNS);
+        List<String> extraIgnorePatterns = new ArrayList<>();
+        boolean readIgnoreFiles = true;
+        long maxFileBytes = 1024L * 1024;
+        Path indexDir = Paths.get(System.getProperty("user.home"), ".cache", "copper");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out" -> outFile = Paths.get(args[++i]);
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--buffer-mb" -> bufferBytes = Math.max(1, Long.parseLong(args[++i])) * 1024 * 1024;
+                    case "--ignore" -> extraIgnorePatterns.add(args[++i]);
+                    case "--no-default-ignores" -> ignorePatterns.clear();
+                    case "--no-gitignore" -> readIgnoreFiles = false;
+                    case "--max-file-kb" -> maxFileBytes = Math.max(1, Long.parseLong(args[++i])) * 1024;
+                    case "--index-dir" -> indexDir = Paths.get(args[++i]);
+                    case "--no-index" -> indexDir = null;
+                    default -> {
+                        if (startFolderPath != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        startFolderPath = Paths.get(args[i]).toAbsolutePath().normalize();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            startFolderPath = null;
+        }
+        if (startFolderPath == null) {
+            System.err.println(USAGE);
             System.exit(1);
         }
 
-        Path startFolderPath = Paths.get(args[0]);
-
         // --- 2. Validate the input path ---
         if (!Files.exists(startFolderPath)) {
             System.err.println("Error: Folder not found at " + startFolderPath);
@@ -35,73 +80,66 @@ public class CopyFolderContentToClipboard {
 
         System.out.println("Processing folder: " + startFolderPath.toAbsolutePath());
 
-        StringBuilder combinedContent = new StringBuilder();
-        final String FILE_SEPARATOR = "\n\n--x--x--x-- File: "; // Separator before each file's info
-        final String CONTENT_SEPARATOR = "--x--x--x--"; // Separator before content starts
-
-        // --- 3. Traverse the directory and collect file content ---
-        try (Stream<Path> walkStream = Files.walk(startFolderPath)) {
-            walkStream
-                    .filter(Files::isRegularFile) // Only process regular files
-                    .forEach(filePath -> {
-                        try {
-                            System.out.println("Processing file: " + filePath.toAbsolutePath());
-                            // Append file name and path
-                            combinedContent.append(CONTENT_SEPARATOR)
-                                    .append("\n");
-                            combinedContent.append("Filename:")
-                                    .append(filePath.toAbsolutePath())
-                                    .append("\n");
-                            combinedContent.append("content:\n")
-                                    .append(CONTENT_SEPARATOR)
-                                    .append("  \n");
-
-                            // Read and append file content
-                            // Assumes text files and default charset (usually UTF-8)
-                            String content = Files.readString(filePath); // Explicitly use READ
-                            combinedContent.append(content);
-                            combinedContent.append("\n");
-                            combinedContent.append(CONTENT_SEPARATOR);
-                            combinedContent.append("\n");
+        ignorePatterns.addAll(extraIgnorePatterns);
+        IgnoreRules rules = IgnoreRules.of(startFolderPath, ignorePatterns, readIgnoreFiles);
 
-                        } catch (IOException e) {
-                            System.err.println("Error reading file: " + filePath + " - " + e.getMessage());
-                            // Continue with the next file
-                        }
-                    });
-
-        } catch (IOException e) {
-            System.err.println("Error during directory traversal: " + e.getMessage());
-            System.exit(1);
-        }
-
-        // --- 4. Copy the combined content to the clipboard using native tools ---
-        String finalString = combinedContent.toString();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // --- 3. List the files, sub folders in parallel ---
+            List<Path> files = pool.invoke(new FolderWalker(startFolderPath, rules));
+            if (files.isEmpty()) {
+                System.out.println("No files found or processed in the directory.");
+                return;
+            }
 
-        if (finalString.isEmpty() || finalString.trim().equals(FILE_SEPARATOR.trim())) {
-            System.out.println("No files found or processed in the directory.");
-        } else {
-            System.out.println("Successfully collected content. Total size: " + finalString.length() + " characters.");
-            try {
-                copyToClipboardNative(finalString); // Use the native method
-                System.out.println("Content copied to clipboard.");
-            } catch (IOException | InterruptedException e) {
-                System.err.println("Error copying content to clipboard using native tools: " + e.getMessage());
-                System.err.println("Please ensure 'wl-copy', 'xclip', or 'xsel' is installed and accessible in your PATH.");
+            // --- 4. Stream the content into the file or the clipboard tool ---
+            boolean failed = false;
+            try (ContentIndex index = indexDir != null ? ContentIndex.open(indexDir, startFolderPath) : ContentIndex.disabled()) {
+                FolderAggregator aggregator = new FolderAggregator(pool, threads, bufferBytes, maxFileBytes, index);
+                if (outFile != null) {
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outFile))) {
+                        report(aggregator.write(files, out));
+                        System.out.println("Content written to " + outFile.toAbsolutePath() + ".");
+                    } catch (IOException e) {
+                        System.err.println("Error writing to " + outFile + ": " + e.getMessage());
+                        failed = true;
+                    }
+                } else {
+                    try {
+                        copyToClipboardNative(aggregator, files);
+                        System.out.println("Content copied to clipboard.");
+                    } catch (IOException | InterruptedException | RuntimeException e) {
+                        System.err.println("Error copying content to clipboard using native tools: " + e.getMessage());
+                        System.err.println("Please ensure 'wl-copy', 'xclip', or 'xsel' is installed and accessible in your PATH.");
+                    }
+                }
+            }
+            if (failed) {
+                System.exit(1);
             }
+        } finally {
+            pool.shutdown();
         }
     }
 
+    private static void report(FolderAggregator.Result result) {
+        System.out.println("Successfully collected content of " + result.files() + " files (" + result.fromIndex()
+                + " unchanged, taken from the index). Skipped " + result.binary() + " binary, " + result.tooLarge()
+                + " too large and " + result.failed() + " unreadable files. Total size: " + result.bytes() + " bytes.");
+    }
+
     /**
-     * Copies the given string to the system clipboard using native command-line tools (wl-copy, xclip, xsel).
+     * Streams the content of the files into the first native clipboard tool that can be started (wl-copy, xclip, xsel).
      * Tries wl-copy first, then xclip, then xsel.
+     * <p>
+     * As the content is not held in memory it can only be written once: the next tool is tried when a tool cannot be
+     * started, but not when it fails after the content was written to it.
      *
-     * @param text The string to copy.
      * @throws IOException          if there's an I/O error executing or writing to the process.
      * @throws InterruptedException if the process is interrupted.
-     * @throws RuntimeException     if no suitable clipboard tool is found or all attempts fail.
+     * @throws RuntimeException     if no suitable clipboard tool is found or the tool fails.
      */
-    private static void copyToClipboardNative(String text) throws IOException, InterruptedException {
+    private static void copyToClipboardNative(FolderAggregator aggregator, List<Path> files) throws IOException, InterruptedException {
         // Define the potential clipboard commands and their arguments
         // Order matters: Wayland first, then X tools
         String[][] commands = {
@@ -111,41 +149,37 @@ public class CopyFolderContentToClipboard {
         };
 
         for (String[] command : commands) {
+            Process process;
             try {
                 System.out.println("Attempting to use command: " + String.join(" ", command));
-                ProcessBuilder pb = new ProcessBuilder(command);
-
-                // Start the process
-                Process process = pb.start();
-
-                // Get the standard input stream of the command and write the text to it
-                // Use try-with-resources to ensure streams are closed
-                try (OutputStream os = process.getOutputStream();
-                     OutputStreamWriter osw = new OutputStreamWriter(os, StandardCharsets.UTF_8)) { // Use UTF-8 for encoding
-                    osw.write(text);
-                    // Ensure the output stream is flushed and closed, indicating end of input
-                } // os and osw are automatically closed here
-
-                // Wait for the process to complete
-                int exitCode = process.waitFor();
-
-                // Check the exit code. 0 typically indicates success.
-                // Different tools might have different success codes, but 0 is standard.
-                if (exitCode == 0) {
-                    System.out.println("Command succeeded.");
-                    return; // Success! Exit the method.
-                } else {
-                    System.err.println("Command failed with exit code: " + exitCode);
-                    // You might read the process's stderr here for more info
-                    // process.getErrorStream()
-                }
-
+                process = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
             } catch (IOException e) {
                 System.err.println("IOException when attempting command " + command[0] + ": " + e.getMessage());
                 // This often means the command (e.g., "wl-copy") was not found in the PATH
                 // Continue to the next command attempt
+                continue;
+            }
+
+            // Stream the content into the standard input of the command, closing it marks the end of the input
+            FolderAggregator.Result result;
+            try (OutputStream os = new BufferedOutputStream(process.getOutputStream())) {
+                result = aggregator.write(files, os);
+            } catch (IOException e) {
+                process.destroy();
+                throw new IOException("Writing to " + command[0] + " failed: " + e.getMessage(), e);
+            }
+            report(result);
+
+            // Wait for the process to complete, 0 indicates success
+            int exitCode = process.waitFor();
+            if (exitCode == 0) {
+                System.out.println("Command succeeded.");
+                return;
             }
-            // InterruptedException is caught by the method signature
+            throw new RuntimeException("Command " + command[0] + " failed with exit code: " + exitCode);
         }
 
         // If the loop finishes without returning, none of the commands worked
@@ -0,0 +1,311 @@
+package de.tkunkel.work;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the content of many files to one stream, in the order of the given list, while the files are read in
+ * parallel.
+ * <p>
+ * Only a bounded window of files is read ahead: at most {@code bufferBytes} of file content and a few files per
+ * reader thread are held in memory at any time, everything else is written out as soon as it is the next file in
+ * order. Files from 256 KB (or an eighth of the buffer) up are not read into memory at all; a reader memory-maps
+ * them and only looks at their head, the writer then writes them from that mapping. So the memory used does not grow
+ * with the size of the tree, and a large file is read from disk once.
+ * <p>
+ * Files larger than {@code maxFileBytes} are skipped. So are binary files: files with a NUL byte in the first 8000
+ * bytes (the same test git uses) or that are not valid UTF-8. For a memory-mapped file only those first 8000 bytes
+ * are decoded, reading the whole file just to classify it would cost as much as writing it. What was found out about
+ * a file is kept in the {@link ContentIndex}, so the next run only reads the files that changed.
+ */
+public class FolderAggregator {
+
+    static final String CONTENT_SEPARATOR = "--x--x--x--"; // Separator before content starts
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int SNIFF_BYTES = 8000;
+    private static final int DECODE_CHARS = 8 * 1024;
+    private static final long MAP_THRESHOLD = 256 * 1024;
+    private static final long MAP_SEGMENT = 64 * 1024 * 1024;
+    private static final int PENDING_PER_THREAD = 4;
+
+    private final ExecutorService readers;
+    private final int threads;
+    private final long bufferBytes;
+    private final long inMemoryLimit;
+    private final long maxFileBytes;
+    private final ContentIndex index;
+    // used by the writing thread only
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * Outcome of one run.
+     */
+    public record Result(int files, int fromIndex, int binary, int tooLarge, int failed, long bytes) {
+    }
+
+    private enum Outcome {
+        TEXT, LARGE_TEXT, BINARY, TOO_LARGE, FAILED
+    }
+
+    /**
+     * @param content  the content of a {@link Outcome#TEXT} file
+     * @param segments the mapping of a {@link Outcome#LARGE_TEXT} file
+     * @param indexed  the unchanged entry in the index, if there is one
+     */
+    private record Loaded(Outcome outcome, ByteBuffer content, List<MappedByteBuffer> segments, long modified, long size,
+                          ContentIndex.Entry indexed, String error) {
+
+        static Loaded of(Outcome outcome, long modified, long size, ContentIndex.Entry indexed) {
+            return new Loaded(outcome, null, null, modified, size, indexed, null);
+        }
+
+        static Loaded failed(String error) {
+            return new Loaded(Outcome.FAILED, null, null, 0, 0, null, error);
+        }
+    }
+
+    private record Pending(Path file, long cost, CompletableFuture<Loaded> loaded) {
+    }
+
+    public FolderAggregator(ExecutorService readers, int threads, long bufferBytes, long maxFileBytes, ContentIndex index) {
+        this.readers = readers;
+        this.threads = threads;
+        this.bufferBytes = bufferBytes;
+        this.inMemoryLimit = Math.min(MAP_THRESHOLD, Math.max(CHUNK_SIZE, bufferBytes / 8));
+        this.maxFileBytes = maxFileBytes;
+        this.index = index;
+    }
+
+    public Result write(List<Path> files, OutputStream out) throws IOException {
+        ArrayDeque<Pending> pending = new ArrayDeque<>();
+        int maxPending = threads * PENDING_PER_THREAD;
+        long buffered = 0;
+        int next = 0;
+        int written = 0;
+        int fromIndex = 0;
+        int binary = 0;
+        int tooLarge = 0;
+        int failed = 0;
+        long bytes = 0;
+
+        while (next < files.size() || !pending.isEmpty()) {
+            // read ahead as far as the buffer allows, but always at least the next file
+            while (next < files.size() && pending.size() < maxPending) {
+                Path file = files.get(next);
+                long cost = costOf(file);
+                if (!pending.isEmpty() && buffered + cost > bufferBytes) {
+                    break;
+                }
+                pending.add(new Pending(file, cost, CompletableFuture.supplyAsync(() -> load(file), readers)));
+                buffered += cost;
+                next++;
+            }
+
+            Pending head = pending.poll();
+            Path file = head.file();
+            Loaded loaded = join(head.loaded());
+            buffered -= head.cost();
+            if (loaded.indexed() != null) {
+                index.keep(file, loaded.indexed());
+            }
+            switch (loaded.outcome()) {
+                case FAILED -> {
+                    System.err.println("Error reading file: " + file + " - " + loaded.error());
+                    failed++;
+                }
+                case TOO_LARGE -> {
+                    System.out.println("Skipping file larger than " + maxFileBytes / 1024 + " KB: " + file.toAbsolutePath());
+                    tooLarge++;
+                }
+                case BINARY -> {
+                    System.out.println("Skipping binary file: " + file.toAbsolutePath());
+                    if (loaded.indexed() == null) {
+                        index.put(file, loaded.modified(), loaded.size(), ContentIndex.Kind.BINARY);
+                    }
+                    binary++;
+                }
+                case TEXT, LARGE_TEXT -> {
+                    System.out.println("Processing file: " + file.toAbsolutePath());
+                    bytes += writeEntry(file, loaded, out);
+                    written++;
+                    if (loaded.indexed() == null) {
+                        addToIndex(file, loaded);
+                    } else {
+                        fromIndex++;
+                    }
+                }
+            }
+        }
+        out.flush();
+        return new Result(written, fromIndex, binary, tooLarge, failed, bytes);
+    }
+
+    private long costOf(Path file) {
+        try {
+            long size = Files.size(file);
+            return size > inMemoryLimit ? 0 : size;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Loaded load(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            long size = attributes.size();
+            if (size > maxFileBytes) {
+                return Loaded.of(Outcome.TOO_LARGE, modified, size, null);
+            }
+
+            ContentIndex.Entry entry = index.lookup(file, modified, size);
+            if (entry != null) {
+                return switch (entry.kind()) {
+                    case TEXT -> new Loaded(Outcome.TEXT, index.content(entry), null, modified, size, entry, null);
+                    case LARGE_TEXT -> new Loaded(Outcome.LARGE_TEXT, null, map(file), modified, size, entry, null);
+                    case BINARY -> Loaded.of(Outcome.BINARY, modified, size, entry);
+                };
+            }
+
+            if (size > inMemoryLimit) {
+                List<MappedByteBuffer> segments = map(file);
+                return isTextHead(segments)
+                        ? new Loaded(Outcome.LARGE_TEXT, null, segments, modified, size, null, null)
+                        : Loaded.of(Outcome.BINARY, modified, size, null);
+            }
+            ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+            return isText(content)
+                    ? new Loaded(Outcome.TEXT, content, null, modified, size, null, null)
+                    : Loaded.of(Outcome.BINARY, modified, size, null);
+        } catch (IOException | RuntimeException e) {
+            return Loaded.failed(e.getMessage());
+        }
+    }
+
+    private void addToIndex(Path file, Loaded loaded) {
+        try {
+            if (loaded.outcome() == Outcome.TEXT) {
+                index.putText(file, loaded.modified(), loaded.size(), loaded.content().duplicate());
+            } else {
+                index.put(file, loaded.modified(), loaded.size(), ContentIndex.Kind.LARGE_TEXT);
+            }
+        } catch (IOException e) {
+            System.err.println("Error adding file to index: " + file + " - " + e.getMessage());
+        }
+    }
+
+    private long writeEntry(Path file, Loaded loaded, OutputStream out) throws IOException {
+        byte[] header = (CONTENT_SEPARATOR + "\n"
+                + "Filename:" + file.toAbsolutePath() + "\n"
+                + "content:\n"
+                + CONTENT_SEPARATOR + "  \n").getBytes(StandardCharsets.UTF_8);
+        byte[] footer = ("\n" + CONTENT_SEPARATOR + "\n").getBytes(StandardCharsets.UTF_8);
+
+        out.write(header);
+        long size = 0;
+        if (loaded.outcome() == Outcome.TEXT) {
+            size = write(loaded.content().duplicate(), out);
+        } else {
+            for (MappedByteBuffer segment : loaded.segments()) {
+                size += write(segment.duplicate(), out);
+            }
+        }
+        out.write(footer);
+        return header.length + size + footer.length;
+    }
+
+    private long write(ByteBuffer content, OutputStream out) throws IOException {
+        int length = content.remaining();
+        if (content.hasArray()) {
+            out.write(content.array(), content.arrayOffset() + content.position(), length);
+            return length;
+        }
+        while (content.hasRemaining()) {
+            int count = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, count);
+            out.write(chunk, 0, count);
+        }
+        return length;
+    }
+
+    private static Loaded join(CompletableFuture<Loaded> loaded) {
+        try {
+            return loaded.join();
+        } catch (CompletionException e) {
+            return Loaded.failed(String.valueOf(e.getCause()));
+        }
+    }
+
+    // the mapping stays valid after the channel is closed
+    private static List<MappedByteBuffer> map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            for (long position = 0; position < size; position += MAP_SEGMENT) {
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SEGMENT, size - position)));
+            }
+            return segments;
+        }
+    }
+
+    // a multi-byte character cut off at the end of the head is fine, the rest of it is not looked at
+    private static boolean isTextHead(List<MappedByteBuffer> segments) {
+        if (segments.isEmpty()) {
+            return true;
+        }
+        ByteBuffer first = segments.get(0);
+        ByteBuffer head = first.slice(0, Math.min(SNIFF_BYTES, first.limit()));
+        boolean wholeFile = segments.size() == 1 && head.limit() == first.limit();
+        return !containsNul(head)
+                && decodes(StandardCharsets.UTF_8.newDecoder(), head, CharBuffer.allocate(DECODE_CHARS), wholeFile);
+    }
+
+    private static boolean isText(ByteBuffer content) {
+        return !containsNul(content)
+                && decodes(StandardCharsets.UTF_8.newDecoder(), content.duplicate(), CharBuffer.allocate(DECODE_CHARS), true);
+    }
+
+    private static boolean containsNul(ByteBuffer bytes) {
+        int end = Math.min(bytes.limit(), bytes.position() + SNIFF_BYTES);
+        for (int i = bytes.position(); i < end; i++) {
+            if (bytes.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // decodes into a small buffer that is thrown away, only whether that works is of interest
+    private static boolean decodes(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput) {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                return false;
+            }
+            chars.clear();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        return !endOfInput || !decoder.flush(chars).isError();
+    }
+}
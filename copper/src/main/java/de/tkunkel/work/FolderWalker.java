@@ -0,0 +1,79 @@
+package de.tkunkel.work;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Lists the regular files below a folder as a fork-join task: every sub folder is listed by its own subtask, so large
+ * trees are listed on all cores.
+ * <p>
+ * The result is in a deterministic order, independent of the order the file system returns the entries in: depth
+ * first, siblings sorted by name. Like {@link Files#walk} symbolic links to folders are not followed, symbolic links
+ * to files are listed.
+ * <p>
+ * Files and folders matched by the {@link IgnoreRules} are left out; ignored folders are not entered at all.
+ */
+public class FolderWalker extends RecursiveTask<List<Path>> {
+
+    private final Path folder;
+    private final IgnoreRules rules;
+
+    /**
+     * @param rules the rules that apply to the folder itself; its own {@code .gitignore} is added when it is listed
+     */
+    public FolderWalker(Path folder, IgnoreRules rules) {
+        this.folder = folder;
+        this.rules = rules;
+    }
+
+    @Override
+    protected List<Path> compute() {
+        IgnoreRules rules = this.rules.forFolder(folder);
+        List<Path> children;
+        try (Stream<Path> list = Files.list(folder)) {
+            children = list.sorted().toList();
+        } catch (IOException e) {
+            System.err.println("Error listing folder: " + folder + " - " + e.getMessage());
+            return List.of();
+        }
+
+        // fork all sub folders first, then join them in name order
+        List<Object> slots = new ArrayList<>(children.size());
+        for (Path child : children) {
+            boolean isFolder = isFolder(child);
+            if (rules.isIgnored(child, isFolder)) {
+                continue;
+            }
+            if (isFolder) {
+                slots.add(new FolderWalker(child, rules).fork());
+            } else if (Files.isRegularFile(child)) {
+                slots.add(child);
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Object slot : slots) {
+            if (slot instanceof FolderWalker subfolder) {
+                files.addAll(subfolder.join());
+            } else {
+                files.add((Path) slot);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isFolder(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package de.tkunkel.work;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Ignore rules in the syntax of {@code .gitignore} files: {@code #} comments, {@code !} to re-include, a trailing
+ * {@code /} for folders only, {@code *}, {@code ?}, {@code [a-z]} and {@code **}. A pattern without a slash (other
+ * than a trailing one) matches the name at any depth below the folder of the file it is from, any other pattern is
+ * relative to that folder.
+ * <p>
+ * Rules are immutable. {@link #forFolder} adds the {@code .gitignore} of a folder for everything below it; as in git
+ * the last matching rule wins, so rules of deeper folders override the ones above. Nothing below an ignored folder can
+ * be re-included, as the folder is not entered at all.
+ */
+public class IgnoreRules {
+
+    /**
+     * Version control data and the build output of the usual build tools.
+     */
+    public static final List<String> DEFAULT_PATTERNS = List.of(".git/", ".svn/", ".hg/", "target/", "build/", "node_modules/", ".idea/");
+
+    private static final String IGNORE_FILE = ".gitignore";
+
+    private final List<Rule> rules;
+    private final boolean readIgnoreFiles;
+
+    private record Rule(Path base, Pattern pattern, boolean negated, boolean folderOnly) {
+
+        boolean matches(Path path, boolean folder) {
+            if (folderOnly && !folder) {
+                return false;
+            }
+            if (!path.startsWith(base) || path.equals(base)) {
+                return false;
+            }
+            String relative = base.relativize(path).toString().replace('\\', '/');
+            return pattern.matcher(relative).matches();
+        }
+    }
+
+    private IgnoreRules(List<Rule> rules, boolean readIgnoreFiles) {
+        this.rules = rules;
+        this.readIgnoreFiles = readIgnoreFiles;
+    }
+
+    /**
+     * @param root            the folder the patterns are relative to
+     * @param patterns        extra patterns, e.g. {@link #DEFAULT_PATTERNS} and the ones given on the command line
+     * @param readIgnoreFiles whether the {@code .gitignore} files in the tree are used
+     */
+    public static IgnoreRules of(Path root, List<String> patterns, boolean readIgnoreFiles) {
+        List<Rule> rules = new ArrayList<>();
+        for (String pattern : patterns) {
+            addRule(rules, root, pattern);
+        }
+        return new IgnoreRules(List.copyOf(rules), readIgnoreFiles);
+    }
+
+    /**
+     * The rules for the content of the folder: these ones plus the folder's {@code .gitignore}, if there is one.
+     */
+    public IgnoreRules forFolder(Path folder) {
+        Path ignoreFile = folder.resolve(IGNORE_FILE);
+        if (!readIgnoreFiles || !Files.isRegularFile(ignoreFile)) {
+            return this;
+        }
+        List<Rule> combined = new ArrayList<>(rules);
+        try {
+            for (String line : Files.readAllLines(ignoreFile, StandardCharsets.UTF_8)) {
+                addRule(combined, folder, line);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading ignore file: " + ignoreFile + " - " + e.getMessage());
+            return this;
+        }
+        return new IgnoreRules(List.copyOf(combined), true);
+    }
+
+    public boolean isIgnored(Path path, boolean folder) {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.matches(path, folder)) {
+                return !rule.negated();
+            }
+        }
+        return false;
+    }
+
+    private static void addRule(List<Rule> rules, Path base, String line) {
+        String pattern = line.strip();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return;
+        }
+        boolean negated = pattern.startsWith("!");
+        if (negated || pattern.startsWith("\\#") || pattern.startsWith("\\!")) {
+            pattern = pattern.substring(1);
+        }
+        boolean folderOnly = pattern.endsWith("/");
+        while (pattern.endsWith("/")) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        if (pattern.isEmpty()) {
+            return;
+        }
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        String regex = (anchored ? "" : "(?:.*/)?") + toRegex(pattern);
+        rules.add(new Rule(base, Pattern.compile(regex), negated, folderOnly));
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 3;
+            } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+                regex.append("/.*");
+                i += 3;
+            } else if (glob.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end + 1;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                i += 2;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return regex.toString();
+    }
+}
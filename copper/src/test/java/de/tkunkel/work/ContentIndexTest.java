@@ -0,0 +1,187 @@
+package de.tkunkel.work;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ContentIndexTest {
+
+    // well before the index is written, so the entries are not racily clean
+    private static final long MODIFIED = 1_600_000_000_000_000_000L;
+
+    @TempDir
+    Path indexRoot;
+    @TempDir
+    Path folder;
+
+    private static ByteBuffer utf8(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer content) {
+        return StandardCharsets.UTF_8.decode(content).toString();
+    }
+
+    @Test
+    void unchangedFilesAreServedFromTheIndex() throws IOException {
+        Path a = folder.resolve("a.txt");
+        Path b = folder.resolve("b.bin");
+        Path c = folder.resolve("c.txt");
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(index.isEnabled()).isTrue();
+            assertThat(index.lookup(a, MODIFIED, 5)).isNull();
+            index.putText(a, MODIFIED, 5, utf8("hello"));
+            index.put(b, MODIFIED, 1000, ContentIndex.Kind.BINARY);
+            index.put(c, MODIFIED, 300_000, ContentIndex.Kind.LARGE_TEXT);
+        }
+
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            ContentIndex.Entry entry = index.lookup(a, MODIFIED, 5);
+            assertThat(entry.kind()).isEqualTo(ContentIndex.Kind.TEXT);
+            assertThat(text(index.content(entry))).isEqualTo("hello");
+            assertThat(index.lookup(b, MODIFIED, 1000).kind()).isEqualTo(ContentIndex.Kind.BINARY);
+            assertThat(index.lookup(c, MODIFIED, 300_000).kind()).isEqualTo(ContentIndex.Kind.LARGE_TEXT);
+            // changed size or modification time: read again
+            assertThat(index.lookup(a, MODIFIED, 6)).isNull();
+            assertThat(index.lookup(a, MODIFIED + 1, 5)).isNull();
+            index.keep(a, entry);
+            assertThat(index.getReused()).isEqualTo(1);
+        }
+
+        // only what was kept or put in the last run survives
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(text(index.content(index.lookup(a, MODIFIED, 5)))).isEqualTo("hello");
+            assertThat(index.lookup(b, MODIFIED, 1000)).isNull();
+        }
+    }
+
+    @Test
+    void racilyCleanEntriesAreReadAgain() throws IOException {
+        Path a = folder.resolve("a.txt");
+        // modified while the run indexing it may already have been reading
+        long modified = Files.getLastModifiedTime(Files.writeString(a, "hello")).to(TimeUnit.NANOSECONDS);
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            index.putText(a, modified, 5, utf8("hello"));
+        }
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(index.lookup(a, modified, 5)).isNull();
+        }
+    }
+
+    @Test
+    void indexIsOnlyAccessibleByTheOwner() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            index.putText(folder.resolve("a.txt"), MODIFIED, 1, utf8("a"));
+        }
+        List<Path> files = files();
+        assertThat(files).isNotEmpty();
+        assertThat(Files.getPosixFilePermissions(files.getFirst().getParent()))
+                .isEqualTo(PosixFilePermissions.fromString("rwx------"));
+        for (Path file : files) {
+            assertThat(Files.getPosixFilePermissions(file)).as(file.toString())
+                    .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+        }
+    }
+
+    @Test
+    void packIsCompactedOnceMostOfItIsStale() throws IOException {
+        String large = "x".repeat(600_000);
+        Path first = folder.resolve("first.txt");
+        Path second = folder.resolve("second.txt");
+        Path small = folder.resolve("small.txt");
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            index.putText(first, MODIFIED, large.length(), utf8(large));
+            index.putText(second, MODIFIED, large.length(), utf8(large));
+            index.putText(small, MODIFIED, 5, utf8("small"));
+        }
+        long packed = packSize();
+        assertThat(packed).isGreaterThan(1_200_000);
+
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            index.keep(small, index.lookup(small, MODIFIED, 5));
+        }
+        // the old pack is only deleted by the next run, the index already refers to the compacted one
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(packSize()).isEqualTo(5);
+            assertThat(text(index.content(index.lookup(small, MODIFIED, 5)))).isEqualTo("small");
+            assertThat(index.lookup(first, MODIFIED, large.length())).isNull();
+        }
+    }
+
+    @Test
+    void secondRunOnTheSameFolderRunsWithoutIndex() throws IOException {
+        try (ContentIndex first = ContentIndex.open(indexRoot, folder);
+             ContentIndex second = ContentIndex.open(indexRoot, folder)) {
+            assertThat(first.isEnabled()).isTrue();
+            assertThat(second.isEnabled()).isFalse();
+            second.putText(folder.resolve("a.txt"), MODIFIED, 1, utf8("a"));
+        }
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(index.isEnabled()).isTrue();
+            assertThat(index.lookup(folder.resolve("a.txt"), MODIFIED, 1)).isNull();
+        }
+    }
+
+    @Test
+    void corruptIndexStartsOver() throws IOException {
+        Path a = folder.resolve("a.txt");
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            index.putText(a, MODIFIED, 1, utf8("a"));
+        }
+        for (Path file : files()) {
+            if (file.getFileName().toString().equals("index.bin")) {
+                Files.write(file, new byte[]{0x63, 0x6f, 0x70, 0x33, 0, 7});
+            }
+        }
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(index.isEnabled()).isTrue();
+            assertThat(index.lookup(a, MODIFIED, 1)).isNull();
+        }
+    }
+
+    @Test
+    void disabledIndexKeepsNothing() throws IOException {
+        try (ContentIndex index = ContentIndex.disabled()) {
+            index.putText(folder.resolve("a"), MODIFIED, 1, utf8("a"));
+            assertThat(index.lookup(folder.resolve("a"), MODIFIED, 1)).isNull();
+            assertThat(index.isEnabled()).isFalse();
+        }
+    }
+
+    private long packSize() throws IOException {
+        long size = 0;
+        for (Path file : files()) {
+            if (file.getFileName().toString().endsWith(".pack")) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(indexRoot)) {
+            for (Path directory : directories) {
+                try (DirectoryStream<Path> content = Files.newDirectoryStream(directory)) {
+                    content.forEach(files::add);
+                }
+            }
+        }
+        return files;
+    }
+}
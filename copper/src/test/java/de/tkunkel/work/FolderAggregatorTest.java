@@ -0,0 +1,116 @@
+package de.tkunkel.work;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FolderAggregatorTest {
+
+    @TempDir
+    Path folder;
+    @TempDir
+    Path indexRoot;
+
+    private ForkJoinPool pool;
+    private List<Path> files;
+    private String largeText;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pool = new ForkJoinPool(4);
+        largeText = "line of text äöü 😀\n".repeat(20_000);
+        byte[] largeBinary = new byte[400_000];
+        Arrays.fill(largeBinary, (byte) 'a');
+        largeBinary[100] = 0;
+        // invalid UTF-8 far behind the head: only the head of a mapped file is checked
+        byte[] lateInvalid = largeText.getBytes(StandardCharsets.UTF_8);
+        lateInvalid[lateInvalid.length - 10] = (byte) 0xff;
+
+        files = List.of(
+                write("a.txt", "small text\n".getBytes(StandardCharsets.UTF_8)),
+                write("b.bin", new byte[]{1, 2, 0, 3}),
+                write("c.txt", new byte[]{'o', 'k', (byte) 0xc3}),
+                write("large.txt", largeText.getBytes(StandardCharsets.UTF_8)),
+                write("large.bin", largeBinary),
+                write("late.txt", lateInvalid),
+                write("huge.txt", new byte[3 * 1024 * 1024]),
+                folder.resolve("missing.txt"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        Path file = Files.write(folder.resolve(name), content);
+        // old enough to be trusted by the index
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+        return file;
+    }
+
+    private FolderAggregator.Result run(ContentIndex index, ByteArrayOutputStream out) throws IOException {
+        FolderAggregator aggregator = new FolderAggregator(pool, 4, 1024 * 1024, 2 * 1024 * 1024, index);
+        return aggregator.write(files, out);
+    }
+
+    @Test
+    void writesTextFilesInOrderAndSkipsTheRest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FolderAggregator.Result result = run(ContentIndex.disabled(), out);
+
+        assertThat(result.files()).isEqualTo(3);
+        assertThat(result.binary()).isEqualTo(3);
+        assertThat(result.tooLarge()).isEqualTo(1);
+        assertThat(result.failed()).isEqualTo(1);
+        assertThat(result.fromIndex()).isZero();
+        assertThat(result.bytes()).isEqualTo(out.size());
+
+        String output = out.toString(StandardCharsets.UTF_8);
+        assertThat(output).contains("Filename:" + folder.resolve("a.txt").toAbsolutePath() + "\n");
+        assertThat(output).contains("small text\n");
+        assertThat(output).contains(largeText);
+        assertThat(output).doesNotContain("b.bin", "c.txt", "large.bin", "huge.txt");
+        assertThat(output.indexOf("a.txt")).isLessThan(output.indexOf("large.txt"));
+        assertThat(output.indexOf("large.txt")).isLessThan(output.indexOf("late.txt"));
+    }
+
+    @Test
+    void secondRunServesUnchangedFilesFromTheIndex() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            assertThat(run(index, first).fromIndex()).isZero();
+        }
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        FolderAggregator.Result result;
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            result = run(index, second);
+        }
+        assertThat(result.fromIndex()).isEqualTo(3);
+        assertThat(result.binary()).isEqualTo(3);
+        assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+
+        // a changed file is read again
+        Files.writeString(folder.resolve("a.txt"), "changed text\n");
+        ByteArrayOutputStream third = new ByteArrayOutputStream();
+        try (ContentIndex index = ContentIndex.open(indexRoot, folder)) {
+            result = run(index, third);
+        }
+        assertThat(result.fromIndex()).isEqualTo(2);
+        assertThat(third.toString(StandardCharsets.UTF_8)).contains("changed text\n").doesNotContain("small text");
+    }
+}
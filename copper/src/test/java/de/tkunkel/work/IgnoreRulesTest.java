@@ -0,0 +1,126 @@
+package de.tkunkel.work;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IgnoreRulesTest {
+
+    @TempDir
+    Path root;
+
+    private IgnoreRules rules(String... patterns) {
+        return IgnoreRules.of(root, List.of(patterns), false);
+    }
+
+    private boolean ignored(IgnoreRules rules, String path) {
+        return rules.isIgnored(root.resolve(path), false);
+    }
+
+    @Test
+    void patternWithoutSlashMatchesAtAnyDepth() {
+        IgnoreRules rules = rules("*.log", "secret.txt");
+        assertThat(ignored(rules, "app.log")).isTrue();
+        assertThat(ignored(rules, "a/b/app.log")).isTrue();
+        assertThat(ignored(rules, "a/secret.txt")).isTrue();
+        assertThat(ignored(rules, "app.log.txt")).isFalse();
+        assertThat(ignored(rules, "not-secret.txt")).isFalse();
+    }
+
+    @Test
+    void patternWithSlashIsAnchored() {
+        IgnoreRules rules = rules("/build.txt", "docs/*.md");
+        assertThat(ignored(rules, "build.txt")).isTrue();
+        assertThat(ignored(rules, "sub/build.txt")).isFalse();
+        assertThat(ignored(rules, "docs/readme.md")).isTrue();
+        assertThat(ignored(rules, "sub/docs/readme.md")).isFalse();
+        // a single star does not cross folders
+        assertThat(ignored(rules, "docs/deep/readme.md")).isFalse();
+    }
+
+    @Test
+    void doubleStar() {
+        IgnoreRules rules = rules("**/generated", "logs/**", "a/**/z.txt");
+        assertThat(ignored(rules, "generated")).isTrue();
+        assertThat(ignored(rules, "x/y/generated")).isTrue();
+        assertThat(ignored(rules, "logs/today/app.txt")).isTrue();
+        assertThat(ignored(rules, "logs")).isFalse();
+        assertThat(ignored(rules, "a/z.txt")).isTrue();
+        assertThat(ignored(rules, "a/b/c/z.txt")).isTrue();
+        assertThat(ignored(rules, "b/a/z.txt")).isFalse();
+    }
+
+    @Test
+    void negationReIncludesAndLastRuleWins() {
+        IgnoreRules rules = rules("*.txt", "!keep.txt", "keep.txt.bak", "!*.bak", "*.bak");
+        assertThat(ignored(rules, "notes.txt")).isTrue();
+        assertThat(ignored(rules, "keep.txt")).isFalse();
+        assertThat(ignored(rules, "sub/keep.txt")).isFalse();
+        assertThat(ignored(rules, "keep.txt.bak")).isTrue();
+    }
+
+    @Test
+    void trailingSlashOnlyMatchesFolders() {
+        IgnoreRules rules = rules("out/");
+        assertThat(rules.isIgnored(root.resolve("out"), true)).isTrue();
+        assertThat(rules.isIgnored(root.resolve("a/out"), true)).isTrue();
+        assertThat(rules.isIgnored(root.resolve("out"), false)).isFalse();
+    }
+
+    @Test
+    void commentsEscapesAndCharacterClasses() {
+        IgnoreRules rules = rules("# comment", "", "\\#hash", "\\!bang", "file[0-9].txt", "x[!a].txt", "q?.txt");
+        assertThat(ignored(rules, "# comment")).isFalse();
+        assertThat(ignored(rules, "#hash")).isTrue();
+        assertThat(ignored(rules, "!bang")).isTrue();
+        assertThat(ignored(rules, "file7.txt")).isTrue();
+        assertThat(ignored(rules, "filex.txt")).isFalse();
+        assertThat(ignored(rules, "xb.txt")).isTrue();
+        assertThat(ignored(rules, "xa.txt")).isFalse();
+        assertThat(ignored(rules, "q1.txt")).isTrue();
+        assertThat(ignored(rules, "q12.txt")).isFalse();
+    }
+
+    @Test
+    void gitignoreFilesApplyBelowTheirFolder() throws IOException {
+        Files.createDirectories(root.resolve("a/b"));
+        Files.writeString(root.resolve(".gitignore"), "*.tmp\n");
+        Files.writeString(root.resolve("a/.gitignore"), "!keep.tmp\n/local.txt\n");
+        IgnoreRules top = IgnoreRules.of(root, List.of(), true).forFolder(root);
+        IgnoreRules inA = top.forFolder(root.resolve("a"));
+
+        assertThat(top.isIgnored(root.resolve("x.tmp"), false)).isTrue();
+        assertThat(top.isIgnored(root.resolve("keep.tmp"), false)).isTrue();
+        assertThat(inA.isIgnored(root.resolve("a/keep.tmp"), false)).isFalse();
+        assertThat(inA.isIgnored(root.resolve("a/b/keep.tmp"), false)).isFalse();
+        assertThat(inA.isIgnored(root.resolve("a/local.txt"), false)).isTrue();
+        assertThat(inA.isIgnored(root.resolve("a/b/local.txt"), false)).isFalse();
+        // without reading ignore files the .gitignore changes nothing
+        assertThat(IgnoreRules.of(root, List.of(), false).forFolder(root).isIgnored(root.resolve("x.tmp"), false)).isFalse();
+    }
+
+    @Test
+    void walkerSkipsIgnoredFilesAndFolders() throws IOException {
+        Files.createDirectories(root.resolve("src/main"));
+        Files.createDirectories(root.resolve("target/classes"));
+        Files.createDirectories(root.resolve(".git"));
+        Files.writeString(root.resolve("src/main/App.java"), "class App {}");
+        Files.writeString(root.resolve("src/main/App.log"), "log");
+        Files.writeString(root.resolve("target/classes/App.class"), "x");
+        Files.writeString(root.resolve(".git/HEAD"), "ref");
+        Files.writeString(root.resolve("README.md"), "readme");
+        Files.writeString(root.resolve(".gitignore"), "*.log\n");
+
+        IgnoreRules rules = IgnoreRules.of(root, IgnoreRules.DEFAULT_PATTERNS, true);
+        List<Path> files = ForkJoinPool.commonPool().invoke(new FolderWalker(root, rules));
+        assertThat(files).containsExactly(root.resolve(".gitignore"), root.resolve("README.md"),
+                root.resolve("src/main/App.java"));
+    }
+}